@@ -185,6 +185,7 @@ else
     MAIL_DOMAIN=${MAIL_DOMAIN:-lssgoo.com}
     
     JWT_SECRET=$(openssl rand -base64 32)
+    OUTBOX_CREDENTIAL_KEY=$(openssl rand -base64 32)
     
     cat > .env << EOF
 DB_HOST=localhost
@@ -195,6 +196,7 @@ DB_PASSWORD=$DB_PASSWORD
 JWT_SECRET=$JWT_SECRET
 JWT_ACCESS_TOKEN_EXPIRATION=3600000
 JWT_REFRESH_TOKEN_EXPIRATION=604800000
+MAIL_SERVER_OUTBOX_CREDENTIAL_KEY=$OUTBOX_CREDENTIAL_KEY
 MAIL_SERVER_DOMAIN=$MAIL_DOMAIN
 MAIL_SERVER_HOST=localhost
 MAIL_SERVER_PORT=587
@@ -63,6 +63,8 @@ echo "=== JWT Configuration ==="
 echo "Generating JWT secret..."
 JWT_SECRET=$(generate_secret)
 echo -e "${GREEN}Generated JWT secret${NC}"
+MAIL_SERVER_OUTBOX_CREDENTIAL_KEY=$(generate_secret)
+echo -e "${GREEN}Generated outbox credential key${NC}"
 prompt_input "JWT Access Token Expiration (ms)" "3600000" JWT_ACCESS_TOKEN_EXPIRATION
 prompt_input "JWT Refresh Token Expiration (ms)" "604800000" JWT_REFRESH_TOKEN_EXPIRATION
 
@@ -112,6 +114,9 @@ JWT_SECRET=$JWT_SECRET
 JWT_ACCESS_TOKEN_EXPIRATION=$JWT_ACCESS_TOKEN_EXPIRATION
 JWT_REFRESH_TOKEN_EXPIRATION=$JWT_REFRESH_TOKEN_EXPIRATION
 
+# Mail Outbox
+MAIL_SERVER_OUTBOX_CREDENTIAL_KEY=$MAIL_SERVER_OUTBOX_CREDENTIAL_KEY
+
 # Mail Server Configuration
 MAIL_SERVER_DOMAIN=$MAIL_SERVER_DOMAIN
 MAIL_SERVER_HOST=$MAIL_SERVER_HOST
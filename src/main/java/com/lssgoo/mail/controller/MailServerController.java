@@ -1,14 +1,44 @@
 package com.lssgoo.mail.controller;
 
 import com.lssgoo.mail.dtos.APIResponse;
+import com.lssgoo.mail.dtos.request.BatchMessageRequest;
+import com.lssgoo.mail.dtos.request.BulkSendRequest;
+import com.lssgoo.mail.dtos.request.MergeRequest;
+import com.lssgoo.mail.dtos.request.MultiFetchRequest;
 import com.lssgoo.mail.dtos.request.ReplyEmailRequest;
+import com.lssgoo.mail.dtos.request.SearchEmailRequest;
 import com.lssgoo.mail.dtos.request.SendEmailRequest;
+import com.lssgoo.mail.dtos.request.TemplateRequest;
+import com.lssgoo.mail.dtos.response.BatchMessageResponse;
+import com.lssgoo.mail.dtos.response.BulkSendResponse;
+import com.lssgoo.mail.dtos.response.ConversationResponse;
 import com.lssgoo.mail.dtos.response.EmailMessageResponse;
+import com.lssgoo.mail.dtos.response.EmailSearchResponse;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.dtos.response.FolderPageResponse;
+import com.lssgoo.mail.dtos.response.FolderResponse;
+import com.lssgoo.mail.dtos.response.MessagePageResponse;
+import com.lssgoo.mail.dtos.response.OutboxStatusResponse;
+import com.lssgoo.mail.dtos.response.TemplateResponse;
+import com.lssgoo.mail.exceptions.MailNotFoundException;
+import com.lssgoo.mail.exceptions.TooManyWatchersException;
+import com.lssgoo.mail.exceptions.UidValidityChangedException;
+import com.lssgoo.mail.service.MailAttachmentService;
+import com.lssgoo.mail.service.MailBatchService;
+import com.lssgoo.mail.service.MailBulkSendService;
 import com.lssgoo.mail.service.MailDnsService;
+import com.lssgoo.mail.service.MailFanoutService;
+import com.lssgoo.mail.service.MailFolderService;
+import com.lssgoo.mail.service.MailOutboxService;
+import com.lssgoo.mail.service.MailPushService;
+import com.lssgoo.mail.service.MailRateShaper;
 import com.lssgoo.mail.service.MailReceiveService;
 import com.lssgoo.mail.service.MailReplyService;
+import com.lssgoo.mail.service.MailSearchService;
 import com.lssgoo.mail.service.MailServerSendService;
 import com.lssgoo.mail.service.MailServerUserService;
+import com.lssgoo.mail.service.MailTemplateService;
+import com.lssgoo.mail.service.MailboxIndexService;
 import com.lssgoo.mail.utils.LoggerUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -19,14 +49,27 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/v1/mail/server")
@@ -51,19 +94,87 @@ public class MailServerController {
     @Autowired
     private MailReplyService mailReplyService;
 
-    @Operation(summary = "Send email via internal mail server", description = "Sends an email using the internal docker-mailserver. Requires email and password in request.")
+    @Autowired
+    private MailboxIndexService mailboxIndexService;
+
+    @Autowired
+    private MailPushService mailPushService;
+
+    @Autowired
+    private MailSearchService mailSearchService;
+
+    @Autowired
+    private MailAttachmentService mailAttachmentService;
+
+    @Autowired
+    private MailBatchService mailBatchService;
+
+    @Autowired
+    private MailFolderService mailFolderService;
+
+    @Autowired
+    private MailFanoutService mailFanoutService;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private MailBulkSendService mailBulkSendService;
+
+    @Autowired
+    private MailTemplateService mailTemplateService;
+
+    @Autowired
+    private MailRateShaper mailRateShaper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Operation(summary = "Send email via internal mail server", description = "Queues the email in the durable outbox and returns immediately with a queue ID. Pass sync=true to send it over SMTP before responding instead.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Email sent successfully",
+            @ApiResponse(responseCode = "202", description = "Email queued for delivery",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class))),
+            @ApiResponse(responseCode = "200", description = "Email sent successfully (sync=true)",
                     content = @Content(schema = @Schema(implementation = APIResponse.class)))
     })
     @PostMapping("/send")
-    public ResponseEntity<APIResponse<Void>> sendEmail(
+    public ResponseEntity<APIResponse<OutboxStatusResponse>> sendEmail(
             @Valid @RequestBody SendEmailRequest request,
             @RequestParam String email,
             @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "false") boolean sync,
             HttpServletRequest httpRequest) {
-        logger.info("Send email via internal server request received - From: {} To: {}", email, request.getTo());
+        logger.info("Send email via internal server request received - From: {} To: {} (sync: {})", email, request.getTo(), sync);
         try {
+            if (!sync) {
+                OutboxStatusResponse queued = mailOutboxService.enqueue(email, password, request);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(APIResponse.<OutboxStatusResponse>builder()
+                        .success(true)
+                        .message("Email queued for delivery")
+                        .data(queued)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+
+            List<String> recipients = new ArrayList<>();
+            recipients.add(request.getTo());
+            if (request.getCc() != null) {
+                recipients.addAll(request.getCc());
+            }
+            if (request.getBcc() != null) {
+                recipients.addAll(request.getBcc());
+            }
+            if (mailRateShaper.tryAcquire(email, recipients) > 0) {
+                // Over the sending rate: hand the message to the outbox instead of rejecting it
+                OutboxStatusResponse queued = mailOutboxService.enqueue(email, password, request);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(APIResponse.<OutboxStatusResponse>builder()
+                        .success(true)
+                        .message("Sending rate exceeded, email queued for delivery")
+                        .data(queued)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+
             String[] cc = request.getCc() != null ? request.getCc().toArray(new String[0]) : null;
             String[] bcc = request.getBcc() != null ? request.getBcc().toArray(new String[0]) : null;
             
@@ -78,14 +189,197 @@ public class MailServerController {
                     request.getIsHtml() != null ? request.getIsHtml() : false
             );
             logger.info("Email sent successfully via internal server from: {} to: {}", email, request.getTo());
-            return ResponseEntity.ok(APIResponse.<Void>builder()
+            return ResponseEntity.ok(APIResponse.<OutboxStatusResponse>builder()
                     .success(true)
                     .message("Email sent successfully")
+                    .data(OutboxStatusResponse.builder()
+                            .status(MailOutboxService.STATUS_SENT)
+                            .attempts(1)
+                            .sentAt(LocalDateTime.now())
+                            .build())
                     .timestamp(LocalDateTime.now())
                     .build());
         } catch (Exception e) {
             logger.error("Failed to send email via internal server - Error: {}", e.getMessage(), e);
-            return ResponseEntity.ok(APIResponse.<Void>builder()
+            return ResponseEntity.ok(APIResponse.<OutboxStatusResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Send emails in bulk", description = "Sends many messages, or one message to many recipients individually, over a single authenticated SMTP session and reports the result for every recipient")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Bulk send completed",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/send/bulk")
+    public ResponseEntity<APIResponse<BulkSendResponse>> sendBulk(
+            @Valid @RequestBody BulkSendRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Bulk send request received from: {}", email);
+        try {
+            BulkSendResponse response = mailBulkSendService.send(email, password, request);
+            return ResponseEntity.ok(APIResponse.<BulkSendResponse>builder()
+                    .success(true)
+                    .message("Bulk send completed: " + response.getAccepted() + " accepted, "
+                            + response.getRejected() + " rejected, " + response.getQueued() + " queued, "
+                            + response.getFailed() + " failed")
+                    .data(response)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to send bulk email - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<BulkSendResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Register mail-merge template", description = "Creates or replaces a named template of the mailbox. Subject and body may contain {{variables}}.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Template registered successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/templates")
+    public ResponseEntity<APIResponse<TemplateResponse>> registerTemplate(
+            @Valid @RequestBody TemplateRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Register template request received for: {} (name: {})", email, request.getName());
+        try {
+            TemplateResponse template = mailTemplateService.register(email, password, request);
+            return ResponseEntity.ok(APIResponse.<TemplateResponse>builder()
+                    .success(true)
+                    .message("Template registered successfully")
+                    .data(template)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to register template - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<TemplateResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get mail-merge templates", description = "Lists the templates registered for the mailbox")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Templates retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/templates")
+    public ResponseEntity<APIResponse<List<TemplateResponse>>> getTemplates(
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Get templates request received for: {}", email);
+        try {
+            List<TemplateResponse> templates = mailTemplateService.getTemplates(email, password);
+            return ResponseEntity.ok(APIResponse.<List<TemplateResponse>>builder()
+                    .success(true)
+                    .message("Templates retrieved successfully")
+                    .data(templates)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get templates - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<TemplateResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Send mail-merge", description = "Renders a registered template for every recipient with its own variables and sends the results over one SMTP session")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Merge completed",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/templates/{name}/merge")
+    public ResponseEntity<APIResponse<BulkSendResponse>> mergeTemplate(
+            @PathVariable String name,
+            @Valid @RequestBody MergeRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Merge request received for: {} (template: {}, recipients: {})", email, name, request.getRecipients().size());
+        try {
+            BulkSendResponse response = mailTemplateService.merge(email, password, name, request);
+            return ResponseEntity.ok(APIResponse.<BulkSendResponse>builder()
+                    .success(true)
+                    .message("Merge completed: " + response.getAccepted() + " accepted, "
+                            + response.getRejected() + " rejected, " + response.getQueued() + " queued, "
+                            + response.getFailed() + " failed")
+                    .data(response)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to merge template - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<BulkSendResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Queue email for delivery", description = "Stores the email in the durable outbox and returns immediately with a queue ID. Delivery is retried with backoff until it succeeds or is dead-lettered.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Email queued successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/outbox")
+    public ResponseEntity<APIResponse<OutboxStatusResponse>> queueEmail(
+            @Valid @RequestBody SendEmailRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Queue email request received - From: {} To: {}", email, request.getTo());
+        try {
+            OutboxStatusResponse status = mailOutboxService.enqueue(email, password, request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(APIResponse.<OutboxStatusResponse>builder()
+                    .success(true)
+                    .message("Email queued successfully")
+                    .data(status)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to queue email - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<OutboxStatusResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get queued email status", description = "Returns the delivery status of an email queued through the outbox")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Status retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/outbox/{queueId}")
+    public ResponseEntity<APIResponse<OutboxStatusResponse>> getQueuedEmail(
+            @PathVariable String queueId,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Get queued email request received for: {} (queue ID: {})", email, queueId);
+        try {
+            OutboxStatusResponse status = mailOutboxService.getStatus(email, password, queueId);
+            return ResponseEntity.ok(APIResponse.<OutboxStatusResponse>builder()
+                    .success(true)
+                    .message("Status retrieved successfully")
+                    .data(status)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get queued email status - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<OutboxStatusResponse>builder()
                     .success(false)
                     .message(e.getMessage())
                     .timestamp(LocalDateTime.now())
@@ -103,12 +397,17 @@ public class MailServerController {
             @RequestParam String email,
             @RequestParam String password,
             @RequestParam(defaultValue = "50") int limit,
-            @RequestParam(defaultValue = "0") int offset) {
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Get inbox request received for: {} (limit: {}, offset: {})", email, limit, offset);
         try {
-            List<EmailMessageResponse> messages = mailReceiveService.getInboxMessages(email, password, limit, offset);
+            HttpHeaders headers = new HttpHeaders();
+            if (folderNotModified(headers, ifNoneMatch, email, password, "INBOX")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+            List<EmailMessageResponse> messages = mailReceiveService.getInboxMessages(email, password, limit, offset, stateTagSink(headers));
             logger.info("Retrieved {} messages from inbox for: {}", messages.size(), email);
-            return ResponseEntity.ok(APIResponse.<List<EmailMessageResponse>>builder()
+            return ResponseEntity.ok().headers(headers).body(APIResponse.<List<EmailMessageResponse>>builder()
                     .success(true)
                     .message("Messages retrieved successfully")
                     .data(messages)
@@ -124,7 +423,396 @@ public class MailServerController {
         }
     }
 
-    @Operation(summary = "Get email message", description = "Retrieves a specific email message by ID")
+    @Operation(summary = "Stream inbox messages", description = "Streams inbox messages as newline-delimited JSON, writing and flushing each message as soon as it is parsed")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Message stream opened")
+    })
+    @GetMapping(value = "/inbox/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamInbox(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(defaultValue = "50") @Min(value = 1, message = "Limit must be at least 1")
+            @Max(value = 500, message = "Limit must be at most 500") int limit,
+            @RequestParam(defaultValue = "0") @Min(value = 0, message = "Offset must not be negative") int offset) {
+        logger.info("Stream inbox request received for: {} (folder: {}, limit: {}, offset: {})", email, folder, limit, offset);
+        StreamingResponseBody body = out -> {
+            try {
+                mailReceiveService.streamMessages(email, password, folder, limit, offset, message -> {
+                    out.write(objectMapper.writeValueAsBytes(message));
+                    out.write('\n');
+                    out.flush();
+                });
+            } catch (RuntimeException e) {
+                // The status line is already sent, so a failure is reported as the last line
+                logger.error("Failed to stream inbox messages - Error: {}", e.getMessage(), e);
+                out.write(objectMapper.writeValueAsBytes(APIResponse.<Void>builder()
+                        .success(false)
+                        .message(e.getMessage())
+                        .timestamp(LocalDateTime.now())
+                        .build()));
+                out.write('\n');
+                out.flush();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @Operation(summary = "Get inbox summaries", description = "Retrieves envelope, flags, size, attachment indicator and a short preview for inbox messages without downloading bodies")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summaries retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/inbox/summary")
+    public ResponseEntity<APIResponse<List<EmailSummaryResponse>>> getInboxSummary(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Get inbox summary request received for: {} (limit: {}, offset: {})", email, limit, offset);
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            if (folderNotModified(headers, ifNoneMatch, email, password, "INBOX")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+            List<EmailSummaryResponse> summaries = mailReceiveService.getInboxSummaries(email, password, limit, offset, stateTagSink(headers));
+            logger.info("Retrieved {} inbox summaries for: {}", summaries.size(), email);
+            return ResponseEntity.ok().headers(headers).body(APIResponse.<List<EmailSummaryResponse>>builder()
+                    .success(true)
+                    .message("Summaries retrieved successfully")
+                    .data(summaries)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get inbox summaries - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<EmailSummaryResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get inbox page", description = "Retrieves a page of messages positioned by an opaque UID cursor, stable while new mail arrives")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/inbox/page")
+    public ResponseEntity<APIResponse<MessagePageResponse<EmailMessageResponse>>> getInboxPage(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Get inbox page request received for: {} (folder: {}, limit: {})", email, folder, limit);
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            if (folderNotModified(headers, ifNoneMatch, email, password, folder)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+            MessagePageResponse<EmailMessageResponse> page = mailReceiveService.getMessagePage(email, password, folder, cursor, limit, stateTagSink(headers));
+            logger.info("Retrieved inbox page of {} messages for: {}", page.getMessages().size(), email);
+            return ResponseEntity.ok().headers(headers).body(APIResponse.<MessagePageResponse<EmailMessageResponse>>builder()
+                    .success(true)
+                    .message("Messages retrieved successfully")
+                    .data(page)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get inbox page - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<MessagePageResponse<EmailMessageResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get inbox summary page", description = "Retrieves a page of summaries positioned by an opaque UID cursor, stable while new mail arrives")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Summaries retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/inbox/summary/page")
+    public ResponseEntity<APIResponse<MessagePageResponse<EmailSummaryResponse>>> getInboxSummaryPage(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Get inbox summary page request received for: {} (folder: {}, limit: {})", email, folder, limit);
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            if (folderNotModified(headers, ifNoneMatch, email, password, folder)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+            MessagePageResponse<EmailSummaryResponse> page = mailReceiveService.getSummaryPage(email, password, folder, cursor, limit, stateTagSink(headers));
+            logger.info("Retrieved inbox summary page of {} messages for: {}", page.getMessages().size(), email);
+            return ResponseEntity.ok().headers(headers).body(APIResponse.<MessagePageResponse<EmailSummaryResponse>>builder()
+                    .success(true)
+                    .message("Summaries retrieved successfully")
+                    .data(page)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get inbox summary page - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<MessagePageResponse<EmailSummaryResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get folders", description = "Lists all folders with message, unseen, UIDNEXT and HIGHESTMODSEQ counters from a single LIST-STATUS round trip, without opening any folder")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Folders retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/folders")
+    public ResponseEntity<APIResponse<List<FolderResponse>>> getFolders(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Get folders request received for: {}", email);
+        try {
+            List<FolderResponse> folders = mailFolderService.getFolders(email, password);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag(mailFolderService.getListTag(folders));
+            if (notModified(ifNoneMatch, headers.getETag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+            logger.info("Retrieved {} folders for: {}", folders.size(), email);
+            return ResponseEntity.ok().headers(headers).body(APIResponse.<List<FolderResponse>>builder()
+                    .success(true)
+                    .message("Folders retrieved successfully")
+                    .data(folders)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get folders - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<FolderResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get summaries of several folders", description = "Fetches summary pages of several folders or ranges concurrently under one deadline and returns them in request order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Pages retrieved",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/folders/summaries")
+    public ResponseEntity<APIResponse<List<FolderPageResponse>>> getFolderSummaries(
+            @Valid @RequestBody MultiFetchRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Multi-folder summary request received for: {} ({} pages)", email, request.getPages().size());
+        try {
+            List<FolderPageResponse> pages = mailFanoutService.fetch(email, password, request);
+            logger.info("Retrieved {} folder pages for: {}", pages.size(), email);
+            return ResponseEntity.ok(APIResponse.<List<FolderPageResponse>>builder()
+                    .success(true)
+                    .message("Pages retrieved")
+                    .data(pages)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get folder summaries - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<FolderPageResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get indexed messages", description = "Pages through messages from the local mailbox index after an incremental sync with the mail server")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/index/messages")
+    public ResponseEntity<APIResponse<List<EmailSummaryResponse>>> getIndexedMessages(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        logger.info("Get indexed messages request received for: {} (folder: {}, page: {}, size: {})", email, folder, page, size);
+        try {
+            List<EmailSummaryResponse> messages = mailboxIndexService.getMessages(email, password, folder, page, size);
+            logger.info("Retrieved {} indexed messages for: {}", messages.size(), email);
+            return ResponseEntity.ok(APIResponse.<List<EmailSummaryResponse>>builder()
+                    .success(true)
+                    .message("Messages retrieved successfully")
+                    .data(messages)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get indexed messages - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<EmailSummaryResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get conversations", description = "Pages through threaded conversations of a folder from the local mailbox index, most recently active first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Conversations retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/conversations")
+    public ResponseEntity<APIResponse<List<ConversationResponse>>> getConversations(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        logger.info("Get conversations request received for: {} (folder: {}, page: {}, size: {})", email, folder, page, size);
+        try {
+            List<ConversationResponse> conversations = mailboxIndexService.getConversations(email, password, folder, page, size);
+            logger.info("Retrieved {} conversations for: {}", conversations.size(), email);
+            return ResponseEntity.ok(APIResponse.<List<ConversationResponse>>builder()
+                    .success(true)
+                    .message("Conversations retrieved successfully")
+                    .data(conversations)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get conversations - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<ConversationResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get indexed message counts", description = "Returns total and unread counts for a folder from the local mailbox index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Counts retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/index/counts")
+    public ResponseEntity<APIResponse<Map<String, Object>>> getIndexedCounts(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder) {
+        logger.info("Get indexed counts request received for: {} (folder: {})", email, folder);
+        try {
+            Map<String, Object> counts = mailboxIndexService.getCounts(email, password, folder);
+            logger.info("Indexed counts retrieved for: {}", email);
+            return ResponseEntity.ok(APIResponse.<Map<String, Object>>builder()
+                    .success(true)
+                    .message("Counts retrieved successfully")
+                    .data(counts)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get indexed counts - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<Map<String, Object>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Subscribe to inbox events", description = "Streams new-message, expunge and flags events for the inbox over Server-Sent Events, driven by IMAP IDLE")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "503", description = "Watcher limit reached, retry after the Retry-After delay")
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToEvents(
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Subscribe to inbox events request received for: {}", email);
+        try {
+            return ResponseEntity.ok(mailPushService.subscribe(email, password));
+        } catch (TooManyWatchersException e) {
+            logger.warn("Rejected inbox events subscription for {}: {}", email, e.getMessage());
+            // No body: the client only accepts text/event-stream
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+    }
+
+    @Operation(summary = "Search messages", description = "Searches a folder on the mail server with UID SEARCH and returns a UID-cursor page of matching envelopes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search completed successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/search")
+    public ResponseEntity<APIResponse<EmailSearchResponse>> searchMessages(
+            @Valid @RequestBody SearchEmailRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Search messages request received for: {} (folder: {}, cursor: {})", email, request.getFolder(), request.getCursor());
+        try {
+            EmailSearchResponse result = mailSearchService.search(email, password, request);
+            logger.info("Search returned {} messages for: {}", result.getMessages().size(), email);
+            return ResponseEntity.ok(APIResponse.<EmailSearchResponse>builder()
+                    .success(true)
+                    .message("Search completed successfully")
+                    .data(result)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to search messages - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<EmailSearchResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Full-text search", description = "Searches the in-process full-text index of previously fetched messages; supports phrases, prefix* terms and field scoping, newest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search completed successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/search/fulltext")
+    public ResponseEntity<APIResponse<EmailSearchResponse>> fullTextSearch(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam String q,
+            @RequestParam(required = false) String folder,
+            @RequestParam(defaultValue = "50") int limit) {
+        logger.info("Full-text search request received for: {} (folder: {}, limit: {})", email, folder, limit);
+        try {
+            EmailSearchResponse result = mailSearchService.fullTextSearch(email, password, q, folder, limit);
+            logger.info("Full-text search returned {} messages for: {}", result.getMessages().size(), email);
+            return ResponseEntity.ok(APIResponse.<EmailSearchResponse>builder()
+                    .success(true)
+                    .message("Search completed successfully")
+                    .data(result)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to run full-text search - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<EmailSearchResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Get email message", description = "Retrieves a specific email message by IMAP UID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Message retrieved successfully",
                     content = @Content(schema = @Schema(implementation = APIResponse.class)))
@@ -134,10 +822,11 @@ public class MailServerController {
             @PathVariable Long messageId,
             @RequestParam String email,
             @RequestParam String password,
+            @RequestParam(required = false) Long uidValidity,
             @RequestParam(required = false, defaultValue = "INBOX") String folder) {
         logger.info("Get message request received - ID: {}, Folder: {}, Email: {}", messageId, folder, email);
         try {
-            EmailMessageResponse message = mailReceiveService.getMessage(email, password, messageId, folder);
+            EmailMessageResponse message = mailReceiveService.getMessage(email, password, messageId, uidValidity, folder);
             logger.info("Message retrieved successfully: {}", messageId);
             return ResponseEntity.ok(APIResponse.<EmailMessageResponse>builder()
                     .success(true)
@@ -155,6 +844,117 @@ public class MailServerController {
         }
     }
 
+    @Operation(summary = "Get messages by UID range", description = "Retrieves messages whose IMAP UIDs fall in the given range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @GetMapping("/messages")
+    public ResponseEntity<APIResponse<List<EmailMessageResponse>>> getMessagesByUid(
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false) Long fromUid,
+            @RequestParam(required = false) Long toUid,
+            @RequestParam(required = false) Long uidValidity,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder) {
+        logger.info("Get messages by UID request received - Range: {}:{}, Folder: {}, Email: {}", fromUid, toUid, folder, email);
+        try {
+            List<EmailMessageResponse> messages = mailReceiveService.getMessagesByUID(email, password, folder, fromUid, toUid, uidValidity);
+            logger.info("Retrieved {} messages by UID for: {}", messages.size(), email);
+            return ResponseEntity.ok(APIResponse.<List<EmailMessageResponse>>builder()
+                    .success(true)
+                    .message("Messages retrieved successfully")
+                    .data(messages)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to get messages by UID - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<List<EmailMessageResponse>>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Download attachment", description = "Streams a single decoded message part from the mail server. Supports Range requests and ETag revalidation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Attachment content"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range of the attachment"),
+            @ApiResponse(responseCode = "304", description = "Attachment not modified"),
+            @ApiResponse(responseCode = "400", description = "Invalid part id or request"),
+            @ApiResponse(responseCode = "404", description = "Message or part not found"),
+            @ApiResponse(responseCode = "409", description = "UIDVALIDITY changed, message IDs must be re-listed"),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable")
+    })
+    @GetMapping("/message/{messageId}/attachments/{partId}")
+    public ResponseEntity<StreamingResponseBody> downloadAttachment(
+            @PathVariable Long messageId,
+            @PathVariable String partId,
+            @RequestParam String email,
+            @RequestParam String password,
+            @RequestParam(required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(required = false) Long uidValidity,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Download attachment request received - Message: {}, Part: {}, Range: {}", messageId, partId, range);
+        MailAttachmentService.AttachmentPart part;
+        try {
+            part = mailAttachmentService.describe(email, password, folder, messageId, uidValidity, partId);
+        } catch (IllegalArgumentException e) {
+            return attachmentError(HttpStatus.BAD_REQUEST, e);
+        } catch (MailNotFoundException e) {
+            return attachmentError(HttpStatus.NOT_FOUND, e);
+        } catch (UidValidityChangedException e) {
+            return attachmentError(HttpStatus.CONFLICT, e);
+        } catch (Exception e) {
+            // Anything else is a failure talking to the IMAP server, not a bad request
+            logger.error("Failed to resolve attachment - Error: {}", e.getMessage(), e);
+            return attachmentError(HttpStatus.BAD_GATEWAY, e);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(part.etag());
+        if (notModified(ifNoneMatch, part.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(parseContentType(part.contentType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(part.filename() != null ? part.filename() : "part-" + partId, StandardCharsets.UTF_8)
+                .build());
+        Long size = part.size();
+        headers.set(HttpHeaders.ACCEPT_RANGES, size != null ? "bytes" : "none");
+
+        // Ranges need a known size; a stale If-Range validator means the full part is sent instead
+        if (range != null && size != null && (ifRange == null || ifRange.equals(part.etag()))) {
+            List<HttpRange> ranges = parseRanges(range);
+            if (ranges.size() == 1) {
+                long start;
+                long end;
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+                }
+                long length = end - start + 1;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                headers.setContentLength(length);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers)
+                        .body(out -> mailAttachmentService.write(email, password, part, start, length, out));
+            }
+        }
+
+        if (size != null) {
+            headers.setContentLength(size);
+        }
+        return ResponseEntity.ok().headers(headers)
+                .body(out -> mailAttachmentService.write(email, password, part, 0, -1, out));
+    }
+
     @Operation(summary = "Mark message as read", description = "Marks an email message as read")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Message marked as read",
@@ -165,10 +965,11 @@ public class MailServerController {
             @PathVariable Long messageId,
             @RequestParam String email,
             @RequestParam String password,
+            @RequestParam(required = false) Long uidValidity,
             @RequestParam(required = false, defaultValue = "INBOX") String folder) {
         logger.info("Mark as read request received - ID: {}, Folder: {}, Email: {}", messageId, folder, email);
         try {
-            mailReceiveService.markAsRead(email, password, messageId, folder);
+            mailReceiveService.markAsRead(email, password, messageId, uidValidity, folder);
             logger.info("Message marked as read: {}", messageId);
             return ResponseEntity.ok(APIResponse.<Void>builder()
                     .success(true)
@@ -195,10 +996,11 @@ public class MailServerController {
             @PathVariable Long messageId,
             @RequestParam String email,
             @RequestParam String password,
+            @RequestParam(required = false) Long uidValidity,
             @RequestParam(required = false, defaultValue = "INBOX") String folder) {
         logger.info("Delete message request received - ID: {}, Folder: {}, Email: {}", messageId, folder, email);
         try {
-            mailReceiveService.deleteMessage(email, password, messageId, folder);
+            mailReceiveService.deleteMessage(email, password, messageId, uidValidity, folder);
             logger.info("Message deleted successfully: {}", messageId);
             return ResponseEntity.ok(APIResponse.<Void>builder()
                     .success(true)
@@ -215,6 +1017,66 @@ public class MailServerController {
         }
     }
 
+    @Operation(summary = "Batch update flags", description = "Sets or clears read and flagged on many messages, selected by UID list or search criteria, with one UID STORE per compressed UID set")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Flags updated",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/messages/flags")
+    public ResponseEntity<APIResponse<BatchMessageResponse>> batchUpdateFlags(
+            @Valid @RequestBody BatchMessageRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Batch flag update request received for: {} (folder: {})", email, request.getFolder());
+        try {
+            BatchMessageResponse result = mailBatchService.updateFlags(email, password, request);
+            logger.info("Batch flag update completed for: {} ({} succeeded, {} failed)", email, result.getSucceeded(), result.getFailed());
+            return ResponseEntity.ok(APIResponse.<BatchMessageResponse>builder()
+                    .success(true)
+                    .message("Flags updated")
+                    .data(result)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to batch update flags - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<BatchMessageResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Operation(summary = "Batch delete messages", description = "Deletes many messages, selected by UID list or search criteria, with one UID STORE per compressed UID set and a single UID EXPUNGE")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages deleted",
+                    content = @Content(schema = @Schema(implementation = APIResponse.class)))
+    })
+    @PostMapping("/messages/delete")
+    public ResponseEntity<APIResponse<BatchMessageResponse>> batchDelete(
+            @Valid @RequestBody BatchMessageRequest request,
+            @RequestParam String email,
+            @RequestParam String password) {
+        logger.info("Batch delete request received for: {} (folder: {})", email, request.getFolder());
+        try {
+            BatchMessageResponse result = mailBatchService.delete(email, password, request);
+            logger.info("Batch delete completed for: {} ({} succeeded, {} failed)", email, result.getSucceeded(), result.getFailed());
+            return ResponseEntity.ok(APIResponse.<BatchMessageResponse>builder()
+                    .success(true)
+                    .message("Messages deleted")
+                    .data(result)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to batch delete messages - Error: {}", e.getMessage(), e);
+            return ResponseEntity.ok(APIResponse.<BatchMessageResponse>builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+    }
+
     @Operation(summary = "Reply to email", description = "Replies to an email message")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Reply sent successfully",
@@ -352,5 +1214,78 @@ public class MailServerController {
                     .build());
         }
     }
-}
 
+    /**
+     * Answers a conditional request from the folder's state ETag. One STATUS is enough to
+     * tell whether anything changed since the client's copy, so an unchanged folder is
+     * answered with a 304 before any message is fetched. Requests without If-None-Match
+     * skip this and take the tag on the listing's own connection instead.
+     */
+    private boolean folderNotModified(HttpHeaders headers, String ifNoneMatch, String email, String password, String folder) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String etag = mailFolderService.getStateTag(email, password, folder);
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+        return notModified(ifNoneMatch, etag);
+    }
+
+    /**
+     * Receives the state tag read by a listing, unless the headers already carry one.
+     */
+    private Consumer<String> stateTagSink(HttpHeaders headers) {
+        if (headers.getETag() != null) {
+            return null;
+        }
+        return etag -> {
+            if (etag != null) {
+                headers.setETag(etag);
+            }
+        };
+    }
+
+    /**
+     * If-None-Match uses weak comparison: a listed tag matches regardless of its W/ prefix.
+     */
+    static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<StreamingResponseBody> attachmentError(HttpStatus status, Exception e) {
+        logger.info("Attachment request rejected with {}: {}", status.value(), e.getMessage());
+        byte[] message = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message));
+    }
+
+    private MediaType parseContentType(String contentType) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return new MediaType(mediaType.getType(), mediaType.getSubtype());
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring malformed Range header: {}", range);
+            return List.of();
+        }
+    }
+}
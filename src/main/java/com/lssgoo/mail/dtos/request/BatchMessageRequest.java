@@ -0,0 +1,32 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchMessageRequest {
+
+    @Size(max = 10000, message = "At most 10000 UIDs per request")
+    private List<Long> uids; // IMAP UIDs to operate on
+
+    @Valid
+    private SearchEmailRequest criteria; // Used instead of uids to select every matching message
+
+    @Builder.Default
+    private String folder = "INBOX";
+
+    private Long uidValidity; // UIDVALIDITY the UIDs were obtained under
+
+    private Boolean read; // Flag updates only: set or clear \Seen
+
+    private Boolean flagged; // Flag updates only: set or clear \Flagged
+}
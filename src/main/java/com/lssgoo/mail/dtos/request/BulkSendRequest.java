@@ -0,0 +1,32 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSendRequest {
+
+    @Valid
+    @Size(max = 1000, message = "At most 1000 messages per request")
+    private List<SendEmailRequest> messages; // Distinct messages, each with its own recipients
+
+    @Size(max = 10000, message = "At most 10000 recipients per request")
+    private List<@Email String> recipients; // Receive their own copy of subject and body below
+
+    private String subject; // Used with recipients
+
+    private String body; // Used with recipients
+
+    @Builder.Default
+    private Boolean isHtml = false; // Used with recipients
+}
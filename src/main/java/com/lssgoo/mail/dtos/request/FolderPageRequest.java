@@ -0,0 +1,28 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderPageRequest {
+
+    @Builder.Default
+    private String folder = "INBOX";
+
+    @Builder.Default
+    @Min(value = 1, message = "Limit must be at least 1")
+    @Max(value = 500, message = "Limit must be at most 500")
+    private Integer limit = 50;
+
+    @Builder.Default
+    @PositiveOrZero(message = "Offset must not be negative")
+    private Integer offset = 0;
+}
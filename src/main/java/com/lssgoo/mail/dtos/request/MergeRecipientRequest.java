@@ -0,0 +1,23 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MergeRecipientRequest {
+
+    @NotBlank(message = "To email is required")
+    @Email(message = "Invalid to email format")
+    private String to;
+
+    private Map<String, String> variables; // Values for the template's {{variables}}; missing ones render empty
+}
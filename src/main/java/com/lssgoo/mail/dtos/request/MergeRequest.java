@@ -0,0 +1,23 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MergeRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one recipient is required")
+    @Size(max = 10000, message = "At most 10000 recipients per request")
+    private List<MergeRecipientRequest> recipients; // Each receives the template rendered with its own variables
+}
@@ -0,0 +1,27 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiFetchRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one page is required")
+    private List<FolderPageRequest> pages; // Folder and range pairs, fetched concurrently, at most mail.server.imap.pool.max-per-mailbox
+
+    @Min(value = 100, message = "Timeout must be at least 100 ms")
+    @Max(value = 60000, message = "Timeout must be at most 60000 ms")
+    private Long timeoutMs; // Overall deadline, defaults to mail.server.fanout.timeout
+}
@@ -14,7 +14,9 @@ import lombok.NoArgsConstructor;
 public class ReplyEmailRequest {
 
     @NotNull(message = "Message ID is required")
-    private Long messageId;
+    private Long messageId; // IMAP UID of the message being replied to
+
+    private Long uidValidity; // Optional UIDVALIDITY the UID was obtained under
 
     @NotBlank(message = "Reply body is required")
     private String body;
@@ -0,0 +1,50 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchEmailRequest {
+
+    private String from;
+
+    private String to;
+
+    private String subject;
+
+    private String text; // Matched against the message body
+
+    private LocalDate since; // Received on or after this date
+
+    private LocalDate before; // Received before this date
+
+    private Boolean unseen;
+
+    private Boolean flagged;
+
+    @PositiveOrZero(message = "Larger must not be negative")
+    private Integer larger; // Size in bytes
+
+    @PositiveOrZero(message = "Smaller must not be negative")
+    private Integer smaller; // Size in bytes
+
+    @Builder.Default
+    private String folder = "INBOX";
+
+    private String cursor; // nextCursor of the previous page; only older matches are returned
+
+    @Builder.Default
+    @Min(value = 1, message = "Limit must be at least 1")
+    @Max(value = 500, message = "Limit must be at most 500")
+    private Integer limit = 50;
+}
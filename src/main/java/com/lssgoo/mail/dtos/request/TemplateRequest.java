@@ -0,0 +1,30 @@
+package com.lssgoo.mail.dtos.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TemplateRequest {
+
+    @NotBlank(message = "Name is required")
+    @Size(max = 100, message = "Name must be at most 100 characters")
+    @Pattern(regexp = "[A-Za-z0-9._-]+", message = "Name may only contain letters, digits, '.', '_' and '-'")
+    private String name;
+
+    @NotBlank(message = "Subject is required")
+    private String subject; // May contain {{variables}}
+
+    @NotBlank(message = "Body is required")
+    private String body; // {{name}} is HTML-escaped in HTML templates, {{{name}}} never is
+
+    @Builder.Default
+    private Boolean isHtml = false;
+}
@@ -0,0 +1,21 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchMessageResponse {
+
+    private String folder;
+    private Long uidValidity;
+    private Integer succeeded;
+    private Integer failed;
+    private List<BatchMessageResult> results; // One entry per requested UID
+}
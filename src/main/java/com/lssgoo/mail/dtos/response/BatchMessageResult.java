@@ -0,0 +1,17 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchMessageResult {
+
+    private Long messageId; // IMAP UID
+    private Boolean success;
+    private String error; // Reason when success is false
+}
@@ -0,0 +1,20 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRecipientResult {
+
+    private Integer message; // Index of the message in the request
+    private String recipient;
+    private String status; // ACCEPTED, REJECTED (by the server), QUEUED (over the sending rate) or FAILED
+    private String queueId; // Outbox queue ID when QUEUED
+    private Integer code; // SMTP reply code when rejected
+    private String error; // Reason when not accepted
+}
@@ -0,0 +1,23 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSendResponse {
+
+    private Integer messages; // Messages built from the request
+    private Integer transactions; // SMTP transactions used to send them
+    private Integer accepted;
+    private Integer rejected;
+    private Integer queued; // Over the sending rate, handed to the outbox
+    private Integer failed;
+    private List<BulkRecipientResult> results; // One entry per recipient of every message
+}
@@ -0,0 +1,25 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationResponse {
+
+    private String threadId; // Message-ID of the thread root
+    private String subject; // Subject of the latest message
+    private List<String> participants; // Distinct senders, most recent first
+    private Long messageCount;
+    private Long unreadCount;
+    private Date lastActivity;
+    private EmailSummaryResponse latest; // Most recent message of the thread in this folder
+    private List<Long> messageIds; // IMAP UIDs of the thread's messages in this folder, newest first
+}
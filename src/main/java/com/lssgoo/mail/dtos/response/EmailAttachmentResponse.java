@@ -11,6 +11,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class EmailAttachmentResponse {
 
+    private String partId; // IMAP section, used to download the part
     private String filename;
     private String contentType;
     private Long size;
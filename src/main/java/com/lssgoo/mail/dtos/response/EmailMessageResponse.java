@@ -14,8 +14,9 @@ import java.util.List;
 @AllArgsConstructor
 public class EmailMessageResponse {
 
-    private Long messageId; // IMAP message number
+    private Long messageId; // IMAP UID, stable across expunges
     private String messageUid; // IMAP UID
+    private Long uidValidity; // UIDVALIDITY of the folder the UID belongs to
     private String from; // Single from address
     private List<String> to;
     private List<String> cc;
@@ -23,6 +24,8 @@ public class EmailMessageResponse {
     private String subject;
     private String body;
     private Boolean isHtml;
+    private Boolean bodyTruncated; // Body was cut at the configured size cap
+    private String preview; // Plaintext snippet without quoted replies
     private Date sentDate;
     private Date receivedDate;
     private Boolean isRead;
@@ -0,0 +1,21 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailSearchResponse {
+
+    private List<EmailSummaryResponse> messages;
+    private Integer totalMatches; // Matches below the request cursor
+    private String nextCursor; // Pass back as cursor for the next page, null when exhausted
+    private Long uidValidity;
+    private String folder;
+}
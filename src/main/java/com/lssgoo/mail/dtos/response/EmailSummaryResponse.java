@@ -0,0 +1,31 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailSummaryResponse {
+
+    private Long messageId; // IMAP UID
+    private Long uidValidity;
+    private String from;
+    private List<String> to;
+    private List<String> cc;
+    private String subject;
+    private Date sentDate;
+    private Date receivedDate;
+    private Boolean isRead;
+    private Boolean isFlagged;
+    private Long size; // RFC822.SIZE in bytes
+    private Boolean hasAttachments; // Derived from BODYSTRUCTURE, no body download
+    private String preview; // Short plaintext snippet of the first text part
+    private String folder;
+}
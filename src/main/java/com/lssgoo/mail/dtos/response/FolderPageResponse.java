@@ -0,0 +1,22 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderPageResponse {
+
+    private String folder;
+    private Integer limit;
+    private Integer offset;
+    private String status; // OK, ERROR or TIMEOUT
+    private String error;
+    private List<EmailSummaryResponse> messages;
+}
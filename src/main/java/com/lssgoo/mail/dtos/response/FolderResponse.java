@@ -0,0 +1,25 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderResponse {
+
+    private String name; // Full folder name, e.g. "INBOX" or "Archive/2024"
+    private String delimiter; // Hierarchy delimiter used in the name
+    private List<String> attributes; // LIST attributes such as \Sent, \Trash, \HasChildren
+    private Boolean selectable;
+    private Integer messages;
+    private Integer unseen;
+    private Long uidNext;
+    private Long uidValidity;
+    private Long highestModSeq; // Only when the server supports CONDSTORE
+}
@@ -0,0 +1,23 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageResponse<T> {
+
+    private String folder;
+    private Long uidValidity;
+    private List<T> messages; // Newest first
+    private String olderCursor; // Continues below the oldest message of this page, null at the end
+    private String newerCursor; // Continues above the newest message of this page
+    private Boolean hasOlder;
+    private Boolean hasNewer;
+}
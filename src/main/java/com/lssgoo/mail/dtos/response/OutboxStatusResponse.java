@@ -0,0 +1,23 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxStatusResponse {
+
+    private String queueId;
+    private String status; // QUEUED, SENDING, SENT or DEAD
+    private Integer attempts;
+    private LocalDateTime nextAttemptAt; // When the next delivery attempt is due, while QUEUED
+    private String lastError; // Reason of the last failed attempt
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,24 @@
+package com.lssgoo.mail.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TemplateResponse {
+
+    private String name;
+    private String subject;
+    private String body;
+    private Boolean isHtml;
+    private List<String> variables; // Variables referenced by subject and body
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "attachment_blobs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_attachment_blobs_sha256", columnNames = {"sha256"})
+}, indexes = {
+        @Index(name = "idx_attachment_blobs_last_accessed", columnList = "last_accessed_at")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentBlob extends BaseEntity {
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private LocalDateTime lastAccessedAt;
+}
@@ -0,0 +1,38 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "attachment_refs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_attachment_refs_part", columnNames = {"mailbox", "folder", "uid_validity", "uid", "section"})
+}, indexes = {
+        @Index(name = "idx_attachment_refs_sha256", columnList = "sha256")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentRef extends BaseEntity {
+
+    @Column(name = "mailbox", nullable = false)
+    private String mailbox;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "uid_validity", nullable = false)
+    private Long uidValidity;
+
+    @Column(name = "uid", nullable = false)
+    private Long uid;
+
+    @Column(name = "section", nullable = false)
+    private String section;
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+}
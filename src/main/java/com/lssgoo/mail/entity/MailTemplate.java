@@ -0,0 +1,33 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "mail_templates", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_mail_templates_owner_name", columnNames = {"owner", "name"})
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailTemplate extends BaseEntity {
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "name", nullable = false, length = 100)
+    private String name;
+
+    @Column(name = "subject", nullable = false, columnDefinition = "TEXT")
+    private String subject;
+
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "is_html", nullable = false)
+    private Boolean isHtml = false;
+}
@@ -0,0 +1,86 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "mailbox_messages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_mailbox_messages_mailbox_folder_uid", columnNames = {"mailbox", "folder", "uid"})
+}, indexes = {
+        @Index(name = "idx_mailbox_messages_message_id", columnList = "mailbox, message_id_header"),
+        @Index(name = "idx_mailbox_messages_thread", columnList = "mailbox, thread_id")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailboxMessage extends BaseEntity {
+
+    @Column(name = "mailbox", nullable = false)
+    private String mailbox;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "uid_validity", nullable = false)
+    private Long uidValidity;
+
+    @Column(name = "uid", nullable = false)
+    private Long uid;
+
+    @Column(name = "mod_seq")
+    private Long modSeq;
+
+    @Column(name = "message_id_header", columnDefinition = "TEXT")
+    private String messageIdHeader;
+
+    @Column(name = "in_reply_to", columnDefinition = "TEXT")
+    private String inReplyTo;
+
+    @Column(name = "references_header", columnDefinition = "TEXT")
+    private String referencesHeader;
+
+    @Column(name = "thread_id", columnDefinition = "TEXT")
+    private String threadId;
+
+    @Column(name = "subject", columnDefinition = "TEXT")
+    private String subject;
+
+    @Column(name = "from_address")
+    private String fromAddress;
+
+    @Column(name = "to_addresses", columnDefinition = "TEXT")
+    private String toAddresses;
+
+    @Column(name = "cc_addresses", columnDefinition = "TEXT")
+    private String ccAddresses;
+
+    @Column(name = "sent_date")
+    private LocalDateTime sentDate;
+
+    @Column(name = "received_date")
+    private LocalDateTime receivedDate;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Column(name = "snippet", columnDefinition = "TEXT")
+    private String snippet;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean isRead = false;
+
+    @Column(name = "is_flagged", nullable = false)
+    private Boolean isFlagged = false;
+
+    @Column(name = "is_answered", nullable = false)
+    private Boolean isAnswered = false;
+
+    @Column(name = "has_attachments", nullable = false)
+    private Boolean hasAttachments = false;
+}
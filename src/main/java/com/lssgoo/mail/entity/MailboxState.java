@@ -0,0 +1,41 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "mailbox_states", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_mailbox_states_mailbox_folder", columnNames = {"mailbox", "folder"})
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailboxState extends BaseEntity {
+
+    @Column(name = "mailbox", nullable = false)
+    private String mailbox;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "uid_validity", nullable = false)
+    private Long uidValidity;
+
+    @Column(name = "uid_next", nullable = false)
+    private Long uidNext;
+
+    @Column(name = "highest_mod_seq")
+    private Long highestModSeq;
+
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount = 0;
+
+    @Column(name = "last_synced_at")
+    private LocalDateTime lastSyncedAt;
+}
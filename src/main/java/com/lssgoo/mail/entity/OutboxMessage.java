@@ -0,0 +1,68 @@
+package com.lssgoo.mail.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "mail_outbox", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_mail_outbox_queue_id", columnNames = {"queue_id"})
+}, indexes = {
+        @Index(name = "idx_mail_outbox_due", columnList = "status, next_attempt_at")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage extends BaseEntity {
+
+    @Column(name = "queue_id", nullable = false, length = 36)
+    private String queueId;
+
+    @Column(name = "sender", nullable = false)
+    private String sender;
+
+    // Encrypted SMTP password, cleared once the message is sent or dead-lettered
+    @Column(name = "credential", columnDefinition = "TEXT")
+    private String credential;
+
+    @Column(name = "to_address", nullable = false)
+    private String toAddress;
+
+    @Column(name = "cc_addresses", columnDefinition = "TEXT")
+    private String ccAddresses;
+
+    @Column(name = "bcc_addresses", columnDefinition = "TEXT")
+    private String bccAddresses;
+
+    @Column(name = "subject", columnDefinition = "TEXT")
+    private String subject;
+
+    @Column(name = "body", columnDefinition = "TEXT")
+    private String body;
+
+    @Column(name = "is_html", nullable = false)
+    private Boolean isHtml = false;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
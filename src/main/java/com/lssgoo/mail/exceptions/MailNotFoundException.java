@@ -0,0 +1,12 @@
+package com.lssgoo.mail.exceptions;
+
+/**
+ * Thrown when a message or message part addressed by the caller does not exist on the
+ * mail server.
+ */
+public class MailNotFoundException extends RuntimeException {
+
+    public MailNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.lssgoo.mail.exceptions;
+
+/**
+ * Thrown when a new inbox subscription would need an IDLE watcher beyond the configured
+ * limit. The subscriber should retry later; existing watchers are unaffected.
+ */
+public class TooManyWatchersException extends RuntimeException {
+
+    public TooManyWatchersException(String message) {
+        super(message);
+    }
+}
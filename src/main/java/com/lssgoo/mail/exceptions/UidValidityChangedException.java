@@ -0,0 +1,12 @@
+package com.lssgoo.mail.exceptions;
+
+/**
+ * Thrown when the caller's UIDVALIDITY no longer matches the folder's, so the message
+ * UIDs it holds refer to other messages and must be re-listed.
+ */
+public class UidValidityChangedException extends RuntimeException {
+
+    public UidValidityChangedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,38 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.AttachmentBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, Long> {
+
+    @Query("SELECT b FROM AttachmentBlob b WHERE b.sha256 = :sha256")
+    Optional<AttachmentBlob> findBySha256(@Param("sha256") String sha256);
+
+    @Query("SELECT COALESCE(SUM(b.size), 0) FROM AttachmentBlob b")
+    long totalSize();
+
+    // Unreferenced blobs go first, then least recently read
+    @Query("SELECT b FROM AttachmentBlob b ORDER BY CASE WHEN b.refCount > 0 THEN 1 ELSE 0 END, b.lastAccessedAt ASC")
+    List<AttachmentBlob> findEvictionCandidates(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.lastAccessedAt = :accessedAt WHERE b.sha256 = :sha256")
+    int touch(@Param("sha256") String sha256, @Param("accessedAt") LocalDateTime accessedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.refCount = b.refCount + :delta WHERE b.sha256 = :sha256")
+    int adjustRefCount(@Param("sha256") String sha256, @Param("delta") int delta);
+}
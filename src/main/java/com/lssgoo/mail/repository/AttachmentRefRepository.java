@@ -0,0 +1,32 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.AttachmentRef;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentRefRepository extends JpaRepository<AttachmentRef, Long> {
+
+    @Query("SELECT r FROM AttachmentRef r WHERE r.mailbox = :mailbox AND r.folder = :folder " +
+            "AND r.uidValidity = :uidValidity AND r.uid = :uid AND r.section = :section")
+    Optional<AttachmentRef> findPart(@Param("mailbox") String mailbox, @Param("folder") String folder,
+                                     @Param("uidValidity") Long uidValidity, @Param("uid") Long uid,
+                                     @Param("section") String section);
+
+    @Query("SELECT r FROM AttachmentRef r WHERE r.mailbox = :mailbox AND r.folder = :folder " +
+            "AND r.uidValidity = :uidValidity AND r.uid = :uid")
+    List<AttachmentRef> findByMessage(@Param("mailbox") String mailbox, @Param("folder") String folder,
+                                      @Param("uidValidity") Long uidValidity, @Param("uid") Long uid);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AttachmentRef r WHERE r.sha256 = :sha256")
+    int deleteBySha256(@Param("sha256") String sha256);
+}
@@ -0,0 +1,20 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.MailTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MailTemplateRepository extends JpaRepository<MailTemplate, Long> {
+
+    @Query("SELECT t FROM MailTemplate t WHERE t.owner = :owner AND t.name = :name")
+    Optional<MailTemplate> findByOwnerAndName(@Param("owner") String owner, @Param("name") String name);
+
+    @Query("SELECT t FROM MailTemplate t WHERE t.owner = :owner ORDER BY t.name")
+    List<MailTemplate> findByOwner(@Param("owner") String owner);
+}
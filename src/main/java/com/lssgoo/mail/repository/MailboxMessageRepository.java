@@ -0,0 +1,67 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.MailboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MailboxMessageRepository extends JpaRepository<MailboxMessage, Long> {
+
+    @Query("SELECT m FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder ORDER BY m.uid DESC")
+    List<MailboxMessage> findPage(@Param("mailbox") String mailbox, @Param("folder") String folder, Pageable pageable);
+
+    @Query("SELECT m FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.uid IN :uids")
+    List<MailboxMessage> findByUids(@Param("mailbox") String mailbox, @Param("folder") String folder, @Param("uids") Collection<Long> uids);
+
+    @Query("SELECT m.uid FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder")
+    List<Long> findAllUids(@Param("mailbox") String mailbox, @Param("folder") String folder);
+
+    @Query("SELECT m.uid FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.uid IN :uids")
+    List<Long> findExistingUids(@Param("mailbox") String mailbox, @Param("folder") String folder, @Param("uids") Collection<Long> uids);
+
+    @Query("SELECT COUNT(m) FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder")
+    long countMessages(@Param("mailbox") String mailbox, @Param("folder") String folder);
+
+    @Query("SELECT COUNT(m) FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.isRead = false")
+    long countUnread(@Param("mailbox") String mailbox, @Param("folder") String folder);
+
+    @Query("SELECT m.messageIdHeader, m.threadId FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.messageIdHeader IN :messageIds AND m.threadId IS NOT NULL")
+    List<Object[]> findThreadIds(@Param("mailbox") String mailbox, @Param("messageIds") Collection<String> messageIds);
+
+    @Query("SELECT m FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.threadId IS NULL ORDER BY m.id")
+    List<MailboxMessage> findUnthreaded(@Param("mailbox") String mailbox, Pageable pageable);
+
+    @Query("SELECT m.threadId, COUNT(m), SUM(CASE WHEN m.isRead = false THEN 1 ELSE 0 END), MAX(m.receivedDate) " +
+            "FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.threadId IS NOT NULL " +
+            "GROUP BY m.threadId ORDER BY MAX(m.receivedDate) DESC NULLS LAST")
+    List<Object[]> findConversations(@Param("mailbox") String mailbox, @Param("folder") String folder, Pageable pageable);
+
+    @Query("SELECT COUNT(DISTINCT m.threadId) FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder")
+    long countConversations(@Param("mailbox") String mailbox, @Param("folder") String folder);
+
+    @Query("SELECT m FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.threadId IN :threadIds ORDER BY m.receivedDate DESC, m.uid DESC")
+    List<MailboxMessage> findByThreadIds(@Param("mailbox") String mailbox, @Param("folder") String folder, @Param("threadIds") Collection<String> threadIds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MailboxMessage m SET m.threadId = :target WHERE m.mailbox = :mailbox AND m.threadId = :source")
+    int mergeThread(@Param("mailbox") String mailbox, @Param("source") String source, @Param("target") String target);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder AND m.uid IN :uids")
+    int deleteByUids(@Param("mailbox") String mailbox, @Param("folder") String folder, @Param("uids") Collection<Long> uids);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MailboxMessage m WHERE m.mailbox = :mailbox AND m.folder = :folder")
+    int deleteFolder(@Param("mailbox") String mailbox, @Param("folder") String folder);
+}
@@ -0,0 +1,16 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.MailboxState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MailboxStateRepository extends JpaRepository<MailboxState, Long> {
+
+    @Query("SELECT s FROM MailboxState s WHERE s.mailbox = :mailbox AND s.folder = :folder")
+    Optional<MailboxState> findByMailboxAndFolder(@Param("mailbox") String mailbox, @Param("folder") String folder);
+}
@@ -0,0 +1,45 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    @Query("SELECT o FROM OutboxMessage o WHERE o.queueId = :queueId")
+    Optional<OutboxMessage> findByQueueId(@Param("queueId") String queueId);
+
+    // Rows locked by another worker are skipped, so concurrent workers never claim the same message
+    @Transactional
+    @Query(value = "UPDATE mail_outbox SET status = 'SENDING', locked_at = :now, attempts = attempts + 1 " +
+            "WHERE id IN (SELECT id FROM mail_outbox WHERE status = 'QUEUED' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *", nativeQuery = true)
+    List<OutboxMessage> claimDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Hands back claimed messages that were not attempted, e.g. on shutdown
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.status = 'QUEUED', o.lockedAt = null, o.attempts = o.attempts - 1 " +
+            "WHERE o.id IN :ids AND o.status = 'SENDING'")
+    int release(@Param("ids") Collection<Long> ids);
+
+    // Messages of a worker that died mid-send are retried once their lock has expired
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.status = 'QUEUED', o.lockedAt = null " +
+            "WHERE o.status = 'SENDING' AND o.lockedAt < :expiredBefore")
+    int recoverExpired(@Param("expiredBefore") LocalDateTime expiredBefore);
+
+    @Query("SELECT COUNT(o) FROM OutboxMessage o WHERE o.status = :status")
+    long countByStatus(@Param("status") String status);
+}
@@ -20,6 +20,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.email = :email")
     Optional<User> findByEmail(@Param("email") String email);
 
+    @Query("SELECT u.organisation.id FROM User u WHERE LOWER(u.email) = :email")
+    Optional<Long> findOrganisationIdByEmail(@Param("email") String email);
+
     @Query("SELECT u FROM User u WHERE u.id = :id AND u.isActive = true")
     Optional<User> findActiveById(@Param("id") Long id);
 
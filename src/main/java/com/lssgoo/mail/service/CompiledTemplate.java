@@ -0,0 +1,150 @@
+package com.lssgoo.mail.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A mail-merge template parsed once into alternating literal text and variable slots.
+ * <p>
+ * Rendering is a single pass of appends over the precomputed segments, with no scanning,
+ * regex or intermediate strings per recipient, so it can write straight into a MIME body
+ * stream. {@code {{name}}} inserts a variable, HTML-escaped when the template is HTML;
+ * {@code {{{name}}}} inserts it as is. Variables missing from a recipient's map render as
+ * empty text. Instances are immutable and safe to share between threads.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+
+    // literals[i] precedes names[i]; the last literal follows the last variable
+    private final String[] literals;
+    private final String[] names;
+    private final boolean[] raw;
+    private final boolean html;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] names, boolean[] raw, boolean html) {
+        this.literals = literals;
+        this.names = names;
+        this.raw = raw;
+        this.html = html;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses a template, failing on unclosed or malformed variables so errors surface
+     * when the template is registered rather than when it is sent.
+     */
+    public static CompiledTemplate compile(String source, boolean html) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+
+        int position = 0;
+        int open;
+        while ((open = source.indexOf(OPEN, position)) >= 0) {
+            boolean triple = source.startsWith("{", open + 2);
+            String close = triple ? "}}}" : "}}";
+            int start = open + (triple ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed template variable at offset " + open);
+            }
+            String name = source.substring(start, end).trim();
+            if (!isValidName(name)) {
+                throw new IllegalArgumentException("Invalid template variable '" + name + "' at offset " + open);
+            }
+            literals.add(source.substring(position, open));
+            names.add(name);
+            raw.add(triple);
+            position = end + close.length();
+        }
+        literals.add(source.substring(position));
+
+        boolean[] rawFlags = new boolean[raw.size()];
+        for (int i = 0; i < rawFlags.length; i++) {
+            rawFlags[i] = raw.get(i);
+        }
+        return new CompiledTemplate(literals.toArray(new String[0]), names.toArray(new String[0]), rawFlags, html);
+    }
+
+    public void render(Map<String, String> variables, Appendable out) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            out.append(literals[i]);
+            String value = variables != null ? variables.get(names[i]) : null;
+            if (value == null) {
+                continue;
+            }
+            if (html && !raw[i]) {
+                escape(value, out);
+            } else {
+                out.append(value);
+            }
+        }
+        out.append(literals[names.length]);
+    }
+
+    public String render(Map<String, String> variables) {
+        StringBuilder out = new StringBuilder(literalLength + 16 * names.length);
+        try {
+            render(variables, out);
+        } catch (IOException e) {
+            // StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Distinct variable names in order of first use.
+     */
+    public List<String> getVariables() {
+        Set<String> distinct = new LinkedHashSet<>(Arrays.asList(names));
+        return new ArrayList<>(distinct);
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    private static boolean isValidName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void escape(String value, Appendable out) throws IOException {
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (entity != null) {
+                out.append(value, from, i).append(entity);
+                from = i + 1;
+            }
+        }
+        out.append(value, from, value.length());
+    }
+}
@@ -0,0 +1,505 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.event.MailEvent;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.ResyncData;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of connected, authenticated IMAP stores keyed by mailbox.
+ * <p>
+ * Callers borrow a {@link Lease} with try-with-resources; the lease hands out the
+ * pooled {@link Store} and keeps the last selected {@link Folder} open so the next
+ * borrower of the same folder skips LOGIN and SELECT. Idle stores are evicted in the
+ * background and stale stores are checked with NOOP before reuse. When a leak threshold
+ * is configured, leases held longer are logged together with the stack that borrowed them.
+ */
+@Component
+public class ImapConnectionPool {
+
+    private static final Logger logger = LoggerUtil.getLogger(ImapConnectionPool.class);
+
+    @Value("${mail.server.imap.host:localhost}")
+    private String imapHost;
+
+    @Value("${mail.server.imap.port:993}")
+    private Integer imapPort;
+
+    @Value("${mail.server.imap.ssl:true}")
+    private Boolean imapSsl;
+
+    @Value("${mail.server.imap.pool.max-per-mailbox:4}")
+    private int maxPerMailbox;
+
+    @Value("${mail.server.imap.pool.max-total:64}")
+    private int maxTotal;
+
+    @Value("${mail.server.imap.pool.borrow-timeout:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${mail.server.imap.pool.idle-timeout:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${mail.server.imap.pool.validate-after-idle:30000}")
+    private long validateAfterIdleMs;
+
+    @Value("${mail.server.imap.pool.leak-threshold:0}")
+    private long leakThresholdMs;
+
+    @Value("${mail.server.imap.pool.eviction-interval:30000}")
+    private long evictionIntervalMs;
+
+    @Value("${mail.server.imap.timeout:30000}")
+    private int imapTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, MailboxPool> pools = new ConcurrentHashMap<>();
+    private final Map<PooledStore, Lease> leases = new ConcurrentHashMap<>();
+
+    private Semaphore openPermits;
+    private Session session;
+    private ScheduledExecutorService evictor;
+
+    @PostConstruct
+    public void init() {
+        String protocol = getProtocol();
+        Properties props = new Properties();
+        props.put("mail." + protocol + ".host", imapHost);
+        props.put("mail." + protocol + ".port", imapPort);
+        props.put("mail." + protocol + ".auth", "true");
+        props.put("mail." + protocol + ".connectiontimeout", imapTimeoutMs);
+        props.put("mail." + protocol + ".timeout", imapTimeoutMs);
+        // Fetch bodies with BODY.PEEK so reading a message never sets \Seen; only markAsRead does
+        props.put("mail." + protocol + ".peek", "true");
+        if (imapSsl) {
+            props.put("mail." + protocol + ".ssl.enable", "true");
+            props.put("mail." + protocol + ".ssl.trust", imapHost);
+        }
+        session = Session.getInstance(props);
+        openPermits = new Semaphore(maxTotal);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "imap-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictAndDetectLeaks, evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("mail.imap.pool.open", () -> maxTotal - openPermits.availablePermits()).register(meterRegistry);
+        Gauge.builder("mail.imap.pool.leased", leases::size).register(meterRegistry);
+        Gauge.builder("mail.imap.pool.idle", this::countIdle).register(meterRegistry);
+
+        logger.info("IMAP connection pool initialised (host: {}, max per mailbox: {}, max total: {})",
+                imapHost, maxPerMailbox, maxTotal);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Shutting down IMAP connection pool");
+        evictor.shutdownNow();
+        for (MailboxPool pool : pools.values()) {
+            PooledStore pooled;
+            while ((pooled = pool.idle.pollFirst()) != null) {
+                destroy(pooled);
+            }
+        }
+        for (PooledStore pooled : new ArrayList<>(leases.keySet())) {
+            destroy(pooled);
+        }
+        leases.clear();
+    }
+
+    /**
+     * Borrows a connected store for the given mailbox, creating and logging in a new
+     * one only when no healthy idle store with the same credentials is available.
+     */
+    public Lease borrow(String email, String password) {
+        String key = email.toLowerCase();
+        String fingerprint = fingerprint(key, password);
+        MailboxPool pool = pools.computeIfAbsent(key, k -> new MailboxPool());
+
+        try {
+            if (!pool.permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Too many concurrent IMAP connections for mailbox: " + email);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for IMAP connection", e);
+        }
+
+        try {
+            PooledStore pooled = takeIdle(pool, fingerprint);
+            if (pooled == null) {
+                pooled = connect(key, email, password, fingerprint);
+            }
+            Lease lease = new Lease(pool, pooled);
+            leases.put(pooled, lease);
+            return lease;
+        } catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks a mailbox's credentials by borrowing a connection, which logs in unless an
+     * idle store already authenticated with the same password is pooled.
+     */
+    public void authenticate(String email, String password) {
+        borrow(email, password).close();
+    }
+
+    /**
+     * Closes every idle store of a mailbox, e.g. after its password was changed.
+     */
+    public void evictMailbox(String email) {
+        MailboxPool pool = pools.get(email.toLowerCase());
+        if (pool == null) {
+            return;
+        }
+        PooledStore pooled;
+        while ((pooled = pool.idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Opens a store outside the pool for long-lived use such as IDLE. It still counts
+     * against the global connection cap and must be closed with {@link #closeDedicated}.
+     */
+    public Store openDedicated(String email, String password) {
+        return connect(email.toLowerCase(), email, password, fingerprint(email.toLowerCase(), password)).store;
+    }
+
+    public void closeDedicated(Store store) {
+        try {
+            store.close();
+        } catch (Exception e) {
+            logger.debug("Error closing dedicated IMAP store: {}", e.getMessage());
+        } finally {
+            openPermits.release();
+        }
+    }
+
+    public String getProtocol() {
+        return imapSsl ? "imaps" : "imap";
+    }
+
+    private PooledStore takeIdle(MailboxPool pool, String fingerprint) {
+        for (PooledStore pooled : pool.idle) {
+            // A store logged in with other credentials is never handed out, but stays pooled
+            // for its owner: a caller with a wrong password must not be able to flush it.
+            if (!pooled.fingerprint.equals(fingerprint) || !pool.idle.remove(pooled)) {
+                continue;
+            }
+            if (isHealthy(pooled)) {
+                return pooled;
+            }
+            logger.debug("Discarding stale IMAP connection for: {}", pooled.mailbox);
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isHealthy(PooledStore pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < validateAfterIdleMs) {
+            // Recently used: trust the local state instead of paying a round trip
+            return pooled.folder == null || pooled.folder.isOpen();
+        }
+        try {
+            if (pooled.folder != null && pooled.folder.isOpen()) {
+                ((IMAPFolder) pooled.folder).doCommand(p -> {
+                    p.noop();
+                    return null;
+                });
+                return true;
+            }
+            // IMAPStore.isConnected() issues a NOOP on the store connection
+            return pooled.store.isConnected();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private PooledStore connect(String key, String email, String password, String fingerprint) {
+        reserveOpenPermit();
+        try {
+            Store store = session.getStore(getProtocol());
+            store.connect(imapHost, imapPort, email, password);
+            logger.debug("Opened new IMAP connection for: {}", email);
+            return new PooledStore(key, fingerprint, store);
+        } catch (MessagingException e) {
+            openPermits.release();
+            throw new RuntimeException("Failed to connect to IMAP server: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            openPermits.release();
+            throw e;
+        }
+    }
+
+    private void reserveOpenPermit() {
+        if (openPermits.tryAcquire()) {
+            return;
+        }
+        // At the global cap: make room by closing the least recently used idle store.
+        if (evictOldestIdle() && openPermits.tryAcquire()) {
+            return;
+        }
+        try {
+            if (!openPermits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("IMAP connection pool exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for IMAP connection", e);
+        }
+    }
+
+    private boolean evictOldestIdle() {
+        MailboxPool oldestPool = null;
+        PooledStore oldest = null;
+        for (MailboxPool pool : pools.values()) {
+            PooledStore candidate = pool.idle.peekLast();
+            if (candidate != null && (oldest == null || candidate.lastUsedAt < oldest.lastUsedAt)) {
+                oldest = candidate;
+                oldestPool = pool;
+            }
+        }
+        if (oldest != null && oldestPool.idle.remove(oldest)) {
+            destroy(oldest);
+            return true;
+        }
+        return false;
+    }
+
+    private void release(MailboxPool pool, PooledStore pooled, boolean broken) {
+        leases.remove(pooled);
+        try {
+            if (broken || (pooled.folder != null && !pooled.folder.isOpen())) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                pool.idle.offerFirst(pooled);
+            }
+        } finally {
+            pool.permits.release();
+        }
+    }
+
+    private void destroy(PooledStore pooled) {
+        if (pooled.closed) {
+            return;
+        }
+        pooled.closed = true;
+        try {
+            if (pooled.folder != null && pooled.folder.isOpen()) {
+                pooled.folder.close(false);
+            }
+        } catch (Exception e) {
+            logger.debug("Error closing IMAP folder: {}", e.getMessage());
+        }
+        try {
+            pooled.store.close();
+        } catch (Exception e) {
+            logger.debug("Error closing IMAP store: {}", e.getMessage());
+        } finally {
+            openPermits.release();
+        }
+    }
+
+    private void evictAndDetectLeaks() {
+        try {
+            long now = System.currentTimeMillis();
+            for (MailboxPool pool : pools.values()) {
+                List<PooledStore> expired = new ArrayList<>();
+                for (PooledStore pooled : pool.idle) {
+                    if (now - pooled.lastUsedAt > idleTimeoutMs) {
+                        expired.add(pooled);
+                    }
+                }
+                for (PooledStore pooled : expired) {
+                    if (pool.idle.remove(pooled)) {
+                        logger.debug("Evicting idle IMAP connection for: {}", pooled.mailbox);
+                        destroy(pooled);
+                    }
+                }
+            }
+            if (leakThresholdMs <= 0) {
+                return;
+            }
+            for (Lease lease : leases.values()) {
+                if (now - lease.borrowedAt > leakThresholdMs && !lease.leakReported) {
+                    lease.leakReported = true;
+                    logger.warn("IMAP connection for {} held for {} ms, possible leak", lease.pooled.mailbox,
+                            now - lease.borrowedAt, lease.borrowedBy);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("IMAP pool eviction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int countIdle() {
+        int idle = 0;
+        for (MailboxPool pool : pools.values()) {
+            idle += pool.idle.size();
+        }
+        return idle;
+    }
+
+    private String fingerprint(String mailbox, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((mailbox + "\0" + password).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fingerprint IMAP credentials", e);
+        }
+    }
+
+    private class MailboxPool {
+        private final Deque<PooledStore> idle = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits = new Semaphore(maxPerMailbox);
+    }
+
+    private static class PooledStore {
+        private final String mailbox;
+        private final String fingerprint;
+        private final Store store;
+        private Folder folder;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        private PooledStore(String mailbox, String fingerprint, Store store) {
+            this.mailbox = mailbox;
+            this.fingerprint = fingerprint;
+            this.store = store;
+        }
+    }
+
+    /**
+     * A borrowed IMAP connection. Closing the lease returns the store to the pool.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final MailboxPool pool;
+        private final PooledStore pooled;
+        private final long borrowedAt = System.currentTimeMillis();
+        // Filling in a stack trace on every borrow is not free, so it is only captured for leak detection
+        private final Throwable borrowedBy = leakThresholdMs > 0 ? new Throwable("IMAP connection borrowed here") : null;
+        private volatile boolean leakReported;
+        private boolean broken;
+        private boolean released;
+
+        private Lease(MailboxPool pool, PooledStore pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        public Store getStore() {
+            return pooled.store;
+        }
+
+        /**
+         * Returns the named folder opened in exactly the requested mode, reusing the folder
+         * left selected by the previous borrower when possible. A READ_WRITE selection is
+         * never handed to a READ_ONLY caller: reads through it could set \Seen, so the
+         * folder is re-opened with EXAMINE instead.
+         */
+        public Folder openFolder(String name, int mode) throws MessagingException {
+            Folder current = pooled.folder;
+            if (current != null && current.isOpen() && current.getFullName().equals(name)
+                    && current.getMode() == mode) {
+                return current;
+            }
+            if (current != null && current.isOpen()) {
+                current.close(false);
+            }
+            pooled.folder = null;
+            Folder folder = pooled.store.getFolder(name);
+            folder.open(mode);
+            pooled.folder = folder;
+            return folder;
+        }
+
+        /**
+         * Re-selects the folder with CONDSTORE/QRESYNC resynchronisation and returns the
+         * vanished and changed message events reported by the server during SELECT.
+         */
+        public List<MailEvent> openFolder(String name, int mode, ResyncData resyncData) throws MessagingException {
+            Folder current = pooled.folder;
+            if (current != null && current.isOpen()) {
+                current.close(false);
+            }
+            pooled.folder = null;
+            IMAPFolder folder = (IMAPFolder) pooled.store.getFolder(name);
+            List<MailEvent> events = folder.open(mode, resyncData);
+            pooled.folder = folder;
+            return events;
+        }
+
+        /**
+         * Returns a folder to issue raw commands through: the one left selected on this
+         * connection if any, otherwise a closed INBOX, whose commands run on the store's own
+         * connection. Commands like LIST and STATUS don't depend on the selected folder, so
+         * this never SELECTs or EXAMINEs anything.
+         */
+        public IMAPFolder commandFolder() throws MessagingException {
+            Folder current = pooled.folder;
+            if (current != null && current.isOpen()) {
+                return (IMAPFolder) current;
+            }
+            return (IMAPFolder) pooled.store.getFolder("INBOX");
+        }
+
+        public boolean hasCapability(String capability) throws MessagingException {
+            return ((IMAPStore) pooled.store).hasCapability(capability);
+        }
+
+        /**
+         * Marks the connection as unusable so it is closed instead of being pooled.
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            release(pool, pooled, broken);
+        }
+    }
+}
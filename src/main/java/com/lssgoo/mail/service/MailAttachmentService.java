@@ -0,0 +1,313 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.exceptions.MailNotFoundException;
+import com.lssgoo.mail.exceptions.UidValidityChangedException;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.MimePart;
+import jakarta.mail.internet.MimeUtility;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.BODY;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streams single MIME parts of a message straight from IMAP.
+ * <p>
+ * Parts are addressed by their IMAP section number ({@code 2}, {@code 1.3}, ...) and read
+ * with {@code BODY.PEEK[section]<offset.size>} in fixed-size chunks, so heap use per
+ * download is one chunk regardless of the attachment size. Parts without a transfer
+ * encoding support byte ranges directly; base64 and quoted-printable parts are decoded on
+ * the fly and can be ranged once their decoded size is known from an earlier download.
+ * The first full download of a part also fills the local attachment store, which serves
+ * every later download of the same content without touching IMAP.
+ */
+@Service
+public class MailAttachmentService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailAttachmentService.class);
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
+    @Value("${mail.server.attachments.chunk-size:65536}")
+    private int chunkSize;
+
+    @Value("${mail.server.attachments.known-sizes:10000}")
+    private long knownSizesMax;
+
+    // Decoded sizes learned from completed downloads, keyed by mailbox and ETag
+    private Cache<String, Long> decodedSizes;
+
+    @PostConstruct
+    public void init() {
+        decodedSizes = Caffeine.newBuilder().maximumSize(knownSizesMax).build();
+    }
+
+    /**
+     * Resolves a part from the message's BODYSTRUCTURE without downloading any content.
+     */
+    public AttachmentPart describe(String email, String password, String folder, Long uid, Long uidValidity, String section) {
+        logger.info("Resolving part {} of message {} in folder {} for: {}", section, uid, folder, email);
+        if (section == null || !section.matches("\\d+(\\.\\d+)*")) {
+            throw new IllegalArgumentException("Invalid part id: " + section);
+        }
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            Folder emailFolder = lease.openFolder(folder, Folder.READ_ONLY);
+            long currentUidValidity = ((UIDFolder) emailFolder).getUIDValidity();
+            if (uidValidity != null && uidValidity != currentUidValidity) {
+                throw new UidValidityChangedException("UIDVALIDITY changed for folder, message IDs must be re-listed");
+            }
+            Message message = ((UIDFolder) emailFolder).getMessageByUID(uid);
+            if (message == null) {
+                throw new MailNotFoundException("Message not found: " + uid);
+            }
+            FetchProfile profile = new FetchProfile();
+            profile.add(FetchProfile.Item.CONTENT_INFO);
+            emailFolder.fetch(new Message[]{message}, profile);
+
+            Part part = findPart(message, section);
+            if (part == null) {
+                throw new MailNotFoundException("Part not found: " + section);
+            }
+
+            String encoding = part instanceof MimePart ? ((MimePart) part).getEncoding() : null;
+            long encodedSize = Math.max(0, part.getSize());
+            // UID and UIDVALIDITY pin the message content, so the ETag never needs revalidating
+            String etag = "\"" + currentUidValidity + "-" + uid + "-" + section + "\"";
+            MailAttachmentStore.StoredBlob stored = mailAttachmentStore.lookup(email, folder, currentUidValidity, uid, section);
+            Long size = stored != null ? Long.valueOf(stored.size())
+                    : isIdentity(encoding) ? Long.valueOf(encodedSize)
+                    : decodedSizes.getIfPresent(sizeKey(email, folder, etag));
+
+            return new AttachmentPart(folder, currentUidValidity, uid, section, part.getFileName(),
+                    part.getContentType(), encoding, encodedSize, size, etag, stored);
+        } catch (MessagingException | IOException e) {
+            logger.error("Failed to resolve attachment: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to resolve attachment: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes {@code length} decoded bytes of the part starting at {@code start} to the
+     * output, or everything from {@code start} when {@code length} is negative.
+     * <p>
+     * Downloads run on a dedicated connection so a slow client never pins a pooled one.
+     */
+    public void write(String email, String password, AttachmentPart part, long start, long length, OutputStream out) throws IOException {
+        if (part.stored() != null) {
+            long copied = mailAttachmentStore.transfer(part.stored(), start, length, out);
+            if (copied >= 0) {
+                logger.info("Served {} bytes of part {} of message {} from the attachment store for: {}", copied, part.section(), part.uid(), email);
+                return;
+            }
+        }
+
+        // Only a complete download yields the whole content and its hash
+        MailAttachmentStore.Ingest ingest = start == 0 && length < 0 ? mailAttachmentStore.begin(part.encodedSize()) : null;
+        Store store = imapConnectionPool.openDedicated(email, password);
+        try {
+            IMAPFolder folder = (IMAPFolder) store.getFolder(part.folder());
+            folder.open(Folder.READ_ONLY);
+            try {
+                if (folder.getUIDValidity() != part.uidValidity()) {
+                    throw new IOException("UIDVALIDITY changed during download");
+                }
+                Message message = folder.getMessageByUID(part.uid());
+                if (message == null) {
+                    throw new IOException("Message no longer exists: " + part.uid());
+                }
+
+                long copied;
+                if (isIdentity(part.encoding())) {
+                    long end = length < 0 ? part.encodedSize() : Math.min(part.encodedSize(), start + length);
+                    try (InputStream in = new SectionInputStream(folder, message, part.section(), start, end)) {
+                        copied = copy(in, out, ingest, -1);
+                    }
+                } else {
+                    try (InputStream in = MimeUtility.decode(
+                            new SectionInputStream(folder, message, part.section(), 0, part.encodedSize()), part.encoding())) {
+                        // Encoded offsets do not map to decoded ones, so skipping means decoding
+                        in.skipNBytes(start);
+                        copied = copy(in, out, ingest, length);
+                    }
+                    if (start == 0 && length < 0) {
+                        decodedSizes.put(sizeKey(email, part.folder(), part.etag()), copied);
+                    }
+                }
+                if (ingest != null) {
+                    mailAttachmentStore.commit(ingest, email, part.folder(), part.uidValidity(), part.uid(), part.section());
+                    ingest = null;
+                }
+                logger.info("Streamed {} bytes of part {} of message {} for: {}", copied, part.section(), part.uid(), email);
+            } finally {
+                folder.close(false);
+            }
+        } catch (MessagingException e) {
+            throw new IOException("Failed to stream attachment: " + e.getMessage(), e);
+        } finally {
+            if (ingest != null) {
+                ingest.discard();
+            }
+            imapConnectionPool.closeDedicated(store);
+        }
+    }
+
+    private long copy(InputStream in, OutputStream out, OutputStream copy, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long copied = 0;
+        while (limit < 0 || copied < limit) {
+            int max = limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - copied);
+            int read = in.read(buffer, 0, max);
+            if (read == -1) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            if (copy != null) {
+                copy.write(buffer, 0, read);
+            }
+            copied += read;
+        }
+        return copied;
+    }
+
+    private Part findPart(Message message, String section) throws MessagingException, IOException {
+        if (!message.isMimeType("multipart/*")) {
+            // A single-part message has exactly one part, numbered 1
+            return "1".equals(section) ? message : null;
+        }
+        Part current = message;
+        for (String index : section.split("\\.")) {
+            if (!current.isMimeType("multipart/*")) {
+                return null;
+            }
+            Multipart multipart = (Multipart) current.getContent();
+            int i = Integer.parseInt(index) - 1;
+            if (i < 0 || i >= multipart.getCount()) {
+                return null;
+            }
+            current = multipart.getBodyPart(i);
+        }
+        return current.isMimeType("multipart/*") ? null : current;
+    }
+
+    private boolean isIdentity(String encoding) {
+        return encoding == null
+                || encoding.equalsIgnoreCase("7bit")
+                || encoding.equalsIgnoreCase("8bit")
+                || encoding.equalsIgnoreCase("binary");
+    }
+
+    private String sizeKey(String email, String folder, String etag) {
+        return email.toLowerCase() + "/" + folder + "/" + etag;
+    }
+
+    /**
+     * A resolved message part. {@code size} is the decoded size, or null while unknown;
+     * {@code stored} is set when the content is in the local attachment store.
+     */
+    public record AttachmentPart(String folder, long uidValidity, long uid, String section, String filename,
+                                 String contentType, String encoding, long encodedSize, Long size, String etag,
+                                 MailAttachmentStore.StoredBlob stored) {
+    }
+
+    /**
+     * Reads the raw (still transfer-encoded) bytes of a section in chunks, fetching the
+     * next chunk only when the previous one has been consumed.
+     */
+    private class SectionInputStream extends InputStream {
+
+        private final IMAPFolder folder;
+        private final Message message;
+        private final String section;
+        private final long end;
+        private long position;
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+        private int chunkCount;
+        private boolean exhausted;
+
+        private SectionInputStream(IMAPFolder folder, Message message, String section, long start, long end) {
+            this.folder = folder;
+            this.message = message;
+            this.section = section;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[chunkOffset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, chunkCount - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, buffer, offset, count);
+            chunkOffset += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            if (chunkOffset < chunkCount) {
+                return true;
+            }
+            if (exhausted || position >= end) {
+                return false;
+            }
+            if (position > Integer.MAX_VALUE) {
+                // IMAP partial fetches take an int offset
+                throw new IOException("Part " + section + " is too large to stream beyond 2 GiB");
+            }
+            int size = (int) Math.min(chunkSize, end - position);
+            int offset = (int) position;
+            BODY body;
+            try {
+                body = (BODY) folder.doCommand(p -> p.peekBody(message.getMessageNumber(), section, offset, size));
+            } catch (MessagingException e) {
+                throw new IOException("Failed to fetch part " + section + ": " + e.getMessage(), e);
+            }
+            if (body == null || body.getByteArray() == null) {
+                throw new IOException("Message was expunged during download");
+            }
+            chunk = body.getByteArray().getBytes();
+            chunkOffset = body.getByteArray().getStart();
+            chunkCount = chunkOffset + body.getByteArray().getCount();
+            if (chunkCount == chunkOffset) {
+                exhausted = true;
+                return false;
+            }
+            position += chunkCount - chunkOffset;
+            return true;
+        }
+    }
+}
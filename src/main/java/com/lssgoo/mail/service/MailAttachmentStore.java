@@ -0,0 +1,352 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.entity.AttachmentBlob;
+import com.lssgoo.mail.entity.AttachmentRef;
+import com.lssgoo.mail.repository.AttachmentBlobRepository;
+import com.lssgoo.mail.repository.AttachmentRefRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed local store of decoded attachment bytes.
+ * <p>
+ * Each distinct content is kept once on disk under its SHA-256, however many mailboxes
+ * received it; a (mailbox, folder, UIDVALIDITY, UID, section) index maps message parts to
+ * their content and keeps a reference count per blob. Parts are added while their first
+ * full download streams from IMAP and are then served from disk with
+ * {@link FileChannel#transferTo}, ranges included. When the store grows past its size
+ * limit, unreferenced blobs are evicted first, then the least recently read.
+ */
+@Component
+public class MailAttachmentStore {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailAttachmentStore.class);
+
+    @Autowired
+    private AttachmentBlobRepository attachmentBlobRepository;
+
+    @Autowired
+    private AttachmentRefRepository attachmentRefRepository;
+
+    @Value("${mail.server.attachments.store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.server.attachments.store.path:./data/attachments}")
+    private String storePath;
+
+    @Value("${mail.server.attachments.store.max-bytes:2147483648}")
+    private long maxBytes;
+
+    @Value("${mail.server.attachments.store.max-blob-bytes:104857600}")
+    private long maxBlobBytes;
+
+    private Path root;
+    private Path tmp;
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private ExecutorService evictor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(storePath).toAbsolutePath();
+        tmp = root.resolve("tmp");
+        Files.createDirectories(tmp);
+        // Partial files of downloads interrupted by a restart are never committed
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tmp)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        totalSize.set(attachmentBlobRepository.totalSize());
+        evictor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "attachment-store-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Attachment store at {} holds {} bytes (limit: {})", root, totalSize.get(), maxBytes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the stored content of a message part, or null if it has not been stored.
+     */
+    public StoredBlob lookup(String mailbox, String folder, long uidValidity, long uid, String section) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Optional<AttachmentRef> ref = attachmentRefRepository.findPart(mailbox.toLowerCase(), folder, uidValidity, uid, section);
+            if (ref.isEmpty()) {
+                return null;
+            }
+            return attachmentBlobRepository.findBySha256(ref.get().getSha256())
+                    .map(blob -> new StoredBlob(blob.getSha256(), blob.getSize()))
+                    .orElse(null);
+        } catch (RuntimeException e) {
+            logger.warn("Attachment store lookup failed for {}: {}", mailbox, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes of a stored blob from {@code start}, or everything from
+     * {@code start} when {@code length} is negative. Returns -1 if the blob has been evicted
+     * in the meantime, so the caller can fall back to IMAP.
+     */
+    public long transfer(StoredBlob blob, long start, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(blobPath(blob.sha256()), StandardOpenOption.READ)) {
+            long end = length < 0 ? channel.size() : Math.min(channel.size(), start + length);
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+            touch(blob.sha256());
+            return Math.max(0, end - start);
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Starts storing a part whose decoded bytes are about to be streamed, or returns null
+     * when the part should not be stored.
+     */
+    public Ingest begin(long encodedSize) {
+        if (!enabled || encodedSize > maxBlobBytes) {
+            return null;
+        }
+        try {
+            return new Ingest(tmp.resolve(UUID.randomUUID() + ".part"));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.warn("Cannot store attachment: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Moves a completely written part into the store under its hash and links it to the
+     * message part. Content already stored is linked without keeping a second copy.
+     */
+    public synchronized void commit(Ingest ingest, String mailbox, String folder, long uidValidity, long uid, String section) {
+        if (!ingest.finish() || ingest.size > maxBlobBytes) {
+            ingest.discard();
+            return;
+        }
+        String sha256 = HexFormat.of().formatHex(ingest.digest.digest());
+        try {
+            Path target = blobPath(sha256);
+            Optional<AttachmentBlob> existing = attachmentBlobRepository.findBySha256(sha256);
+            if (existing.isPresent() && Files.exists(target)) {
+                ingest.discard();
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(ingest.path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (existing.isEmpty()) {
+                    AttachmentBlob blob = new AttachmentBlob();
+                    blob.setSha256(sha256);
+                    blob.setSize(ingest.size);
+                    blob.setRefCount(0);
+                    blob.setLastAccessedAt(LocalDateTime.now());
+                    attachmentBlobRepository.save(blob);
+                    totalSize.addAndGet(ingest.size);
+                }
+            }
+
+            String key = mailbox.toLowerCase();
+            if (attachmentRefRepository.findPart(key, folder, uidValidity, uid, section).isEmpty()) {
+                AttachmentRef ref = new AttachmentRef();
+                ref.setMailbox(key);
+                ref.setFolder(folder);
+                ref.setUidValidity(uidValidity);
+                ref.setUid(uid);
+                ref.setSection(section);
+                ref.setSha256(sha256);
+                attachmentRefRepository.save(ref);
+                attachmentBlobRepository.adjustRefCount(sha256, 1);
+            }
+            logger.debug("Stored part {} of message {} for {} as {} ({} bytes, shared: {})",
+                    section, uid, mailbox, sha256, ingest.size, existing.isPresent());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to store attachment for {}: {}", mailbox, e.getMessage());
+            ingest.discard();
+        }
+
+        if (totalSize.get() > maxBytes && evictionScheduled.compareAndSet(false, true)) {
+            evictor.execute(this::evict);
+        }
+    }
+
+    /**
+     * Drops the index entries of a deleted message. Its blobs stay until evicted, but are
+     * evicted before any blob that is still referenced.
+     */
+    public void unlinkMessage(String mailbox, String folder, long uidValidity, long uid) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (AttachmentRef ref : attachmentRefRepository.findByMessage(mailbox.toLowerCase(), folder, uidValidity, uid)) {
+                attachmentRefRepository.delete(ref);
+                attachmentBlobRepository.adjustRefCount(ref.getSha256(), -1);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to unlink stored attachments of message {} for {}: {}", uid, mailbox, e.getMessage());
+        }
+    }
+
+    private void touch(String sha256) {
+        try {
+            attachmentBlobRepository.touch(sha256, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            logger.debug("Failed to record attachment access: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Evicts down to 90% of the size limit, so eviction does not run again on every store.
+     */
+    private void evict() {
+        long target = maxBytes / 10 * 9;
+        int evicted = 0;
+        try {
+            while (totalSize.get() > target) {
+                List<AttachmentBlob> candidates = attachmentBlobRepository.findEvictionCandidates(PageRequest.of(0, 100));
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                for (AttachmentBlob blob : candidates) {
+                    if (totalSize.get() <= target) {
+                        break;
+                    }
+                    synchronized (this) {
+                        attachmentRefRepository.deleteBySha256(blob.getSha256());
+                        attachmentBlobRepository.delete(blob);
+                        // An open channel keeps reading an unlinked file, so in-flight downloads finish
+                        Files.deleteIfExists(blobPath(blob.getSha256()));
+                    }
+                    totalSize.addAndGet(-blob.getSize());
+                    evicted++;
+                }
+            }
+            logger.info("Evicted {} attachment blobs, store now holds {} bytes", evicted, totalSize.get());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Attachment store eviction failed: {}", e.getMessage(), e);
+        } finally {
+            evictionScheduled.set(false);
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Content of a stored part.
+     */
+    public record StoredBlob(String sha256, long size) {
+    }
+
+    /**
+     * Receives the decoded bytes of a part while they are streamed to the client, hashing
+     * them on the way. A failing disk never fails the download: the copy is just dropped.
+     */
+    public static class Ingest extends OutputStream {
+
+        private final Path path;
+        private final OutputStream file;
+        private final MessageDigest digest;
+        private long size;
+        private boolean failed;
+
+        private Ingest(Path path) throws IOException, NoSuchAlgorithmException {
+            this.digest = MessageDigest.getInstance("SHA-256");
+            this.path = path;
+            this.file = Files.newOutputStream(path);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            if (failed) {
+                return;
+            }
+            try {
+                file.write(buffer, offset, length);
+                digest.update(buffer, offset, length);
+                size += length;
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+
+        /**
+         * Closes the file; returns false if any write failed.
+         */
+        private boolean finish() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                failed = true;
+            }
+            return !failed;
+        }
+
+        public void discard() {
+            finish();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.debug("Failed to delete partial attachment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
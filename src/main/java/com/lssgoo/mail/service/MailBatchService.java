@@ -0,0 +1,192 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.request.BatchMessageRequest;
+import com.lssgoo.mail.dtos.response.BatchMessageResponse;
+import com.lssgoo.mail.dtos.response.BatchMessageResult;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.search.SearchTerm;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.UIDSet;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Flag and delete operations over many messages in one IMAP session.
+ * <p>
+ * Targets are given as UIDs or as search criteria resolved with {@code UID SEARCH}. Their
+ * existence is checked with one {@code UID FETCH}, each flag change is one
+ * {@code UID STORE} per compressed UID set, and deletes end in a single
+ * {@code UID EXPUNGE} of exactly those UIDs (a plain EXPUNGE without UIDPLUS).
+ */
+@Service
+public class MailBatchService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailBatchService.class);
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailSearchService mailSearchService;
+
+    @Autowired
+    private MailMessageCache mailMessageCache;
+
+    @Autowired
+    private MailFullTextIndex mailFullTextIndex;
+
+    @Autowired
+    private MailFolderService mailFolderService;
+
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
+    // Bounds the command line length; each UID range is at most ~22 characters
+    @Value("${mail.server.batch.max-ranges-per-command:500}")
+    private int maxRangesPerCommand;
+
+    public BatchMessageResponse updateFlags(String email, String password, BatchMessageRequest request) {
+        if (request.getRead() == null && request.getFlagged() == null) {
+            throw new RuntimeException("At least one of read or flagged must be set");
+        }
+        return execute(email, password, request, false);
+    }
+
+    public BatchMessageResponse delete(String email, String password, BatchMessageRequest request) {
+        return execute(email, password, request, true);
+    }
+
+    private BatchMessageResponse execute(String email, String password, BatchMessageRequest request, boolean delete) {
+        String folderName = request.getFolder() != null ? request.getFolder() : "INBOX";
+        logger.info("Batch {} in folder {} for: {}", delete ? "delete" : "flag update", folderName, email);
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            IMAPFolder folder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_WRITE);
+            long uidValidity = folder.getUIDValidity();
+            if (request.getUidValidity() != null && request.getUidValidity() != uidValidity) {
+                throw new RuntimeException("UIDVALIDITY changed for folder, message IDs must be re-listed");
+            }
+
+            long[] requested = resolveTargets(folder, request);
+            // One UID FETCH tells which of the requested UIDs still exist
+            Message[] messages = requested.length > 0 ? folder.getMessagesByUID(requested) : new Message[0];
+            List<Message> existing = new ArrayList<>();
+            List<Long> existingUids = new ArrayList<>();
+            for (int i = 0; i < requested.length; i++) {
+                if (messages[i] != null) {
+                    existing.add(messages[i]);
+                    existingUids.add(requested[i]);
+                }
+            }
+
+            String error = null;
+            try {
+                if (!existingUids.isEmpty()) {
+                    long[] uids = existingUids.stream().mapToLong(Long::longValue).toArray();
+                    if (delete) {
+                        store(folder, uids, "\\Deleted", true);
+                        if (lease.hasCapability("UIDPLUS")) {
+                            // UID EXPUNGE removes exactly these UIDs and leaves other \Deleted messages alone
+                            folder.expunge(existing.toArray(new Message[0]));
+                        } else {
+                            folder.expunge();
+                        }
+                    } else {
+                        if (request.getRead() != null) {
+                            store(folder, uids, "\\Seen", request.getRead());
+                        }
+                        if (request.getFlagged() != null) {
+                            store(folder, uids, "\\Flagged", request.getFlagged());
+                        }
+                    }
+                }
+            } catch (MessagingException e) {
+                logger.error("Batch operation failed part-way for {}: {}", email, e.getMessage(), e);
+                error = e.getMessage();
+            } finally {
+                for (long uid : existingUids) {
+                    mailMessageCache.invalidate(email, folderName, uidValidity, uid);
+                }
+                if (!existingUids.isEmpty()) {
+                    mailFolderService.invalidate(email);
+                }
+            }
+            if (delete && error == null) {
+                for (long uid : existingUids) {
+                    mailFullTextIndex.delete(email, folderName, uidValidity, uid);
+                    mailAttachmentStore.unlinkMessage(email, folderName, uidValidity, uid);
+                }
+            }
+
+            List<BatchMessageResult> results = new ArrayList<>();
+            int succeeded = 0;
+            for (int i = 0; i < requested.length; i++) {
+                boolean found = messages[i] != null;
+                boolean success = found && error == null;
+                if (success) {
+                    succeeded++;
+                }
+                results.add(BatchMessageResult.builder()
+                        .messageId(requested[i])
+                        .success(success)
+                        .error(!found ? "Message not found" : error)
+                        .build());
+            }
+
+            logger.info("Batch {} completed for {}: {} of {} messages", delete ? "delete" : "flag update", email, succeeded, requested.length);
+            return BatchMessageResponse.builder()
+                    .folder(folderName)
+                    .uidValidity(uidValidity)
+                    .succeeded(succeeded)
+                    .failed(requested.length - succeeded)
+                    .results(results)
+                    .build();
+        } catch (MessagingException e) {
+            logger.error("Failed to run batch operation: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to run batch operation: " + e.getMessage(), e);
+        }
+    }
+
+    private long[] resolveTargets(IMAPFolder folder, BatchMessageRequest request) throws MessagingException {
+        if (request.getUids() != null && !request.getUids().isEmpty()) {
+            return new TreeSet<>(request.getUids()).stream().mapToLong(Long::longValue).toArray();
+        }
+        if (request.getCriteria() != null) {
+            SearchTerm term = mailSearchService.buildTerm(request.getCriteria());
+            if (term != null) {
+                return mailSearchService.searchUids(folder, term, null);
+            }
+        }
+        throw new RuntimeException("Either uids or search criteria are required");
+    }
+
+    /**
+     * Sets or clears a flag with {@code UID STORE}, one command per group of compressed
+     * UID ranges. Not {@code .SILENT}: the untagged FETCH replies keep the flags cached on
+     * the pooled folder's messages current for the next borrower.
+     */
+    private void store(IMAPFolder folder, long[] uids, String flag, boolean set) throws MessagingException {
+        UIDSet[] ranges = UIDSet.createUIDSets(uids);
+        for (int from = 0; from < ranges.length; from += maxRangesPerCommand) {
+            UIDSet[] group = Arrays.copyOfRange(ranges, from, Math.min(from + maxRangesPerCommand, ranges.length));
+            String command = "UID STORE " + UIDSet.toString(group) + (set ? " +" : " -") + "FLAGS (" + flag + ")";
+            folder.doCommand(p -> {
+                Response[] responses = p.command(command, null);
+                p.notifyResponseHandlers(responses);
+                p.handleResult(responses[responses.length - 1]);
+                return null;
+            });
+        }
+    }
+}
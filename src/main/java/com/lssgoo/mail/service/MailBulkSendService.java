@@ -0,0 +1,352 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.request.BulkSendRequest;
+import com.lssgoo.mail.dtos.request.SendEmailRequest;
+import com.lssgoo.mail.dtos.response.BulkRecipientResult;
+import com.lssgoo.mail.dtos.response.BulkSendResponse;
+import com.lssgoo.mail.dtos.response.OutboxStatusResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends many messages from one sender over a single pooled SMTP session.
+ * <p>
+ * The transport is authenticated once for the whole request instead of once per message,
+ * and is replaced only when it reaches the per-connection message limit or breaks.
+ * Messages with more recipients than one transaction may carry are split into several
+ * transactions of the same message. Rejected recipients do not abort a transaction: the
+ * message goes to the accepted ones and every recipient gets its own result.
+ */
+@Service
+public class MailBulkSendService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailBulkSendService.class);
+
+    public static final String STATUS_ACCEPTED = "ACCEPTED";
+    public static final String STATUS_REJECTED = "REJECTED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_QUEUED = "QUEUED";
+
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
+    @Autowired
+    private MailRateShaper mailRateShaper;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Value("${mail.server.smtp.bulk.max-recipients-per-transaction:100}")
+    private int maxRecipientsPerTransaction;
+
+    public BulkSendResponse send(String email, String password, BulkSendRequest request) {
+        List<SendEmailRequest> drafts = expand(request);
+        return send(email, password, new MessageSource() {
+            @Override
+            public int size() {
+                return drafts.size();
+            }
+
+            @Override
+            public String recipient(int index) {
+                return drafts.get(index).getTo();
+            }
+
+            @Override
+            public MimeMessage build(int index) throws MessagingException {
+                return MailBulkSendService.this.build(email, drafts.get(index));
+            }
+
+            @Override
+            public SendEmailRequest draft(int index) {
+                return drafts.get(index);
+            }
+        });
+    }
+
+    /**
+     * Sends every message of the source over one session. Messages are built one at a
+     * time just before they are sent, so the whole batch is never held in memory.
+     */
+    public BulkSendResponse send(String email, String password, MessageSource source) {
+        int size = source.size();
+        logger.info("Bulk send of {} messages from: {}", size, email);
+
+        List<BulkRecipientResult> results = new ArrayList<>();
+        int transactions = 0;
+        SmtpTransportPool.Lease lease = null;
+        try {
+            for (int i = 0; i < size; i++) {
+                MimeMessage message;
+                List<InternetAddress> recipients;
+                try {
+                    message = source.build(i);
+                    // Headers are fixed once, so all transactions of a split message carry the same Message-ID
+                    message.saveChanges();
+                    recipients = recipients(message);
+                } catch (MessagingException | RuntimeException e) {
+                    results.add(result(i, source.recipient(i), STATUS_FAILED, null, "Invalid message: " + e.getMessage()));
+                    continue;
+                }
+                if (mailRateShaper.tryAcquire(email, addresses(recipients.toArray(new Address[0]))) > 0) {
+                    queue(email, password, source, i, recipients, results);
+                    continue;
+                }
+
+                for (int start = 0; start < recipients.size(); start += maxRecipientsPerTransaction) {
+                    List<InternetAddress> chunk = recipients.subList(start, Math.min(recipients.size(), start + maxRecipientsPerTransaction));
+                    if (lease != null && lease.isExhausted()) {
+                        lease.close();
+                        lease = null;
+                    }
+                    if (lease == null) {
+                        try {
+                            lease = smtpTransportPool.borrow(email, password);
+                        } catch (RuntimeException e) {
+                            if (transactions == 0) {
+                                throw e;
+                            }
+                            // Nothing more can be sent; report the rest instead of losing the results so far
+                            failRemaining(source, i, recipients, start, e.getMessage(), results);
+                            return response(size, transactions, results);
+                        }
+                    }
+
+                    transactions++;
+                    try {
+                        record(i, chunk, lease.sendPartial(message, chunk.toArray(new Address[0])), results);
+                    } catch (SendFailedException e) {
+                        record(i, chunk, e, results);
+                    } catch (MessagingException | RuntimeException e) {
+                        logger.warn("Bulk send transaction failed for {}: {}", email, e.getMessage());
+                        for (InternetAddress recipient : chunk) {
+                            results.add(result(i, recipient.getAddress(), STATUS_FAILED, null, e.getMessage()));
+                        }
+                    }
+                    if (lease.isBroken()) {
+                        lease.close();
+                        lease = null;
+                    }
+                }
+            }
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+
+        BulkSendResponse response = response(size, transactions, results);
+        logger.info("Bulk send from {} done in {} transactions: {} accepted, {} rejected, {} queued, {} failed",
+                email, transactions, response.getAccepted(), response.getRejected(), response.getQueued(), response.getFailed());
+        return response;
+    }
+
+    private List<SendEmailRequest> expand(BulkSendRequest request) {
+        List<SendEmailRequest> messages = new ArrayList<>();
+        if (request.getMessages() != null) {
+            messages.addAll(request.getMessages());
+        }
+        if (request.getRecipients() != null && !request.getRecipients().isEmpty()) {
+            if (request.getSubject() == null || request.getBody() == null) {
+                throw new RuntimeException("Subject and body are required with recipients");
+            }
+            for (String recipient : request.getRecipients()) {
+                messages.add(SendEmailRequest.builder()
+                        .to(recipient)
+                        .subject(request.getSubject())
+                        .body(request.getBody())
+                        .isHtml(request.getIsHtml())
+                        .build());
+            }
+        }
+        if (messages.isEmpty()) {
+            throw new RuntimeException("Either messages or recipients are required");
+        }
+        return messages;
+    }
+
+    private MimeMessage build(String from, SendEmailRequest draft) throws MessagingException {
+        MimeMessage message = smtpTransportPool.createPartialMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(from);
+        helper.setTo(draft.getTo());
+        if (draft.getCc() != null && !draft.getCc().isEmpty()) {
+            helper.setCc(draft.getCc().toArray(new String[0]));
+        }
+        if (draft.getBcc() != null && !draft.getBcc().isEmpty()) {
+            helper.setBcc(draft.getBcc().toArray(new String[0]));
+        }
+        helper.setSubject(draft.getSubject());
+        helper.setText(draft.getBody(), Boolean.TRUE.equals(draft.getIsHtml()));
+        return message;
+    }
+
+    /**
+     * Every distinct envelope recipient of the message; an address listed twice is sent once.
+     */
+    private List<InternetAddress> recipients(MimeMessage message) throws MessagingException {
+        Map<String, InternetAddress> unique = new LinkedHashMap<>();
+        for (Address address : message.getAllRecipients()) {
+            InternetAddress recipient = (InternetAddress) address;
+            unique.putIfAbsent(recipient.getAddress().toLowerCase(), recipient);
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * Records the outcome of one transaction. Rejected recipients carry the server's reply
+     * from the {@link SMTPAddressFailedException} chained for their RCPT command.
+     */
+    void record(int index, List<InternetAddress> chunk, SendFailedException failure, List<BulkRecipientResult> results) {
+        if (failure == null) {
+            for (InternetAddress recipient : chunk) {
+                results.add(result(index, recipient.getAddress(), STATUS_ACCEPTED, null, null));
+            }
+            return;
+        }
+
+        Map<String, SMTPAddressFailedException> rejections = new HashMap<>();
+        for (Exception next = failure.getNextException(); next != null;
+             next = next instanceof MessagingException ? ((MessagingException) next).getNextException() : null) {
+            if (next instanceof SMTPAddressFailedException) {
+                SMTPAddressFailedException rejection = (SMTPAddressFailedException) next;
+                rejections.put(rejection.getAddress().getAddress().toLowerCase(), rejection);
+            }
+        }
+        List<String> sent = addresses(failure.getValidSentAddresses());
+        List<String> invalid = addresses(failure.getInvalidAddresses());
+        for (InternetAddress recipient : chunk) {
+            String key = recipient.getAddress().toLowerCase();
+            if (sent.contains(key)) {
+                results.add(result(index, recipient.getAddress(), STATUS_ACCEPTED, null, null));
+            } else if (invalid.contains(key)) {
+                SMTPAddressFailedException rejection = rejections.get(key);
+                results.add(result(index, recipient.getAddress(), STATUS_REJECTED,
+                        rejection != null ? rejection.getReturnCode() : null,
+                        rejection != null ? rejection.getMessage().trim() : failure.getMessage()));
+            } else {
+                results.add(result(index, recipient.getAddress(), STATUS_FAILED, null, failure.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Hands a message over the sending rate to the outbox, which delivers it once the
+     * sender's and destinations' buckets have refilled.
+     */
+    private void queue(String email, String password, MessageSource source, int index, List<InternetAddress> recipients,
+                       List<BulkRecipientResult> results) {
+        try {
+            OutboxStatusResponse queued = mailOutboxService.enqueue(email, password, source.draft(index));
+            for (InternetAddress recipient : recipients) {
+                BulkRecipientResult result = result(index, recipient.getAddress(), STATUS_QUEUED, null, null);
+                result.setQueueId(queued.getQueueId());
+                results.add(result);
+            }
+        } catch (RuntimeException e) {
+            for (InternetAddress recipient : recipients) {
+                results.add(result(index, recipient.getAddress(), STATUS_FAILED, null, "Failed to queue: " + e.getMessage()));
+            }
+        }
+    }
+
+    private void failRemaining(MessageSource source, int index, List<InternetAddress> recipients, int start,
+                               String error, List<BulkRecipientResult> results) {
+        for (InternetAddress recipient : recipients.subList(start, recipients.size())) {
+            results.add(result(index, recipient.getAddress(), STATUS_FAILED, null, error));
+        }
+        for (int i = index + 1; i < source.size(); i++) {
+            try {
+                for (InternetAddress recipient : recipients(source.build(i))) {
+                    results.add(result(i, recipient.getAddress(), STATUS_FAILED, null, error));
+                }
+            } catch (MessagingException | RuntimeException e) {
+                results.add(result(i, source.recipient(i), STATUS_FAILED, null, error));
+            }
+        }
+    }
+
+    private List<String> addresses(Address[] addresses) {
+        List<String> keys = new ArrayList<>();
+        if (addresses != null) {
+            for (Address address : addresses) {
+                keys.add(((InternetAddress) address).getAddress().toLowerCase());
+            }
+        }
+        return keys;
+    }
+
+    private BulkRecipientResult result(int index, String recipient, String status, Integer code, String error) {
+        return BulkRecipientResult.builder()
+                .message(index)
+                .recipient(recipient)
+                .status(status)
+                .code(code)
+                .error(error)
+                .build();
+    }
+
+    private BulkSendResponse response(int messages, int transactions, List<BulkRecipientResult> results) {
+        int accepted = 0;
+        int rejected = 0;
+        int queued = 0;
+        for (BulkRecipientResult result : results) {
+            if (STATUS_ACCEPTED.equals(result.getStatus())) {
+                accepted++;
+            } else if (STATUS_REJECTED.equals(result.getStatus())) {
+                rejected++;
+            } else if (STATUS_QUEUED.equals(result.getStatus())) {
+                queued++;
+            }
+        }
+        return BulkSendResponse.builder()
+                .messages(messages)
+                .transactions(transactions)
+                .accepted(accepted)
+                .rejected(rejected)
+                .queued(queued)
+                .failed(results.size() - accepted - rejected - queued)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Messages of one bulk send, addressed by their index in the request.
+     */
+    public interface MessageSource {
+
+        int size();
+
+        /**
+         * Main recipient of a message, reported when the message cannot be built.
+         */
+        String recipient(int index);
+
+        /**
+         * Builds a message created by {@link SmtpTransportPool#createPartialMessage()}.
+         */
+        MimeMessage build(int index) throws MessagingException;
+
+        /**
+         * The message as a plain request, for handing it to the outbox when it is over the
+         * sending rate.
+         */
+        SendEmailRequest draft(int index);
+    }
+}
@@ -0,0 +1,137 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.request.FolderPageRequest;
+import com.lssgoo.mail.dtos.request.MultiFetchRequest;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.dtos.response.FolderPageResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches several folder pages concurrently and merges them into one response.
+ * <p>
+ * Each page runs on a bounded worker pool with its own pooled IMAP connection, so the
+ * wall-clock time is that of the slowest page rather than the sum. All pages share one
+ * deadline: whatever has not finished by then is cancelled and reported as
+ * {@code TIMEOUT}, and a failing page is reported as {@code ERROR} without affecting the
+ * others. If the request thread is interrupted every outstanding page is cancelled.
+ */
+@Service
+public class MailFanoutService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailFanoutService.class);
+
+    @Autowired
+    private MailReceiveService mailReceiveService;
+
+    @Value("${mail.server.fanout.threads:32}")
+    private int threads;
+
+    @Value("${mail.server.fanout.queue-size:256}")
+    private int queueSize;
+
+    @Value("${mail.server.fanout.timeout:10000}")
+    private long defaultTimeoutMs;
+
+    @Value("${mail.server.imap.pool.max-per-mailbox:4}")
+    private int maxPerMailbox;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "mail-fanout-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<FolderPageResponse> fetch(String email, String password, MultiFetchRequest request) {
+        long timeoutMs = request.getTimeoutMs() != null ? request.getTimeoutMs() : defaultTimeoutMs;
+        List<FolderPageRequest> pages = request.getPages();
+        if (pages.size() > maxPerMailbox) {
+            // Every page holds one of the mailbox's connections; extra pages would only queue
+            // behind the pool's borrow timeout and fail
+            throw new RuntimeException("At most " + maxPerMailbox + " pages per request");
+        }
+        logger.info("Fan-out fetch of {} pages for: {} (timeout: {} ms)", pages.size(), email, timeoutMs);
+
+        List<Future<List<EmailSummaryResponse>>> futures = new ArrayList<>();
+        try {
+            for (FolderPageRequest page : pages) {
+                futures.add(submit(email, password, page));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            List<FolderPageResponse> results = new ArrayList<>();
+            for (int i = 0; i < pages.size(); i++) {
+                results.add(await(pages.get(i), futures.get(i), deadline));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Fan-out fetch interrupted", e);
+        } finally {
+            // Nothing outlives the request: cancel whatever is still queued or running
+            for (Future<List<EmailSummaryResponse>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<List<EmailSummaryResponse>> submit(String email, String password, FolderPageRequest page) {
+        String folder = page.getFolder() != null ? page.getFolder() : "INBOX";
+        int limit = page.getLimit() != null ? page.getLimit() : 50;
+        int offset = page.getOffset() != null ? page.getOffset() : 0;
+        try {
+            return executor.submit(() -> mailReceiveService.getFolderSummaries(email, password, folder, limit, offset));
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("Too many concurrent fetches, try again later", e);
+        }
+    }
+
+    private FolderPageResponse await(FolderPageRequest page, Future<List<EmailSummaryResponse>> future, long deadline)
+            throws InterruptedException {
+        FolderPageResponse.FolderPageResponseBuilder result = FolderPageResponse.builder()
+                .folder(page.getFolder())
+                .limit(page.getLimit())
+                .offset(page.getOffset());
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return result.status("OK").messages(future.get(remaining, TimeUnit.NANOSECONDS)).build();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Fan-out page {} timed out", page.getFolder());
+            return result.status("TIMEOUT").error("Deadline exceeded").build();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warn("Fan-out page {} failed: {}", page.getFolder(), cause.getMessage());
+            return result.status("ERROR").error(cause.getMessage()).build();
+        }
+    }
+}
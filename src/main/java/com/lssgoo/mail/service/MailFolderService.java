@@ -0,0 +1,205 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.dtos.response.FolderResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.iap.ProtocolException;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.IMAPProtocol;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.eclipse.angus.mail.imap.protocol.ListInfo;
+import org.eclipse.angus.mail.imap.protocol.Status;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists a mailbox's folders together with their counters.
+ * <p>
+ * With LIST-STATUS (RFC 5819) the whole tree and every folder's MESSAGES, UNSEEN, UIDNEXT,
+ * UIDVALIDITY and HIGHESTMODSEQ come back from one {@code LIST ... RETURN (STATUS ...)};
+ * otherwise a plain LIST is followed by one STATUS per folder. Folders are never selected.
+ * Results are cached per mailbox for a short TTL and dropped whenever this server changes
+ * the mailbox itself.
+ */
+@Service
+public class MailFolderService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailFolderService.class);
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Value("${mail.server.folders.cache-ttl:30000}")
+    private long cacheTtlMs;
+
+    private Cache<String, List<FolderResponse>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+    }
+
+    public List<FolderResponse> getFolders(String email, String password) {
+        logger.info("Fetching folders for: {}", email);
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            // Borrowing the lease has authenticated the caller, so the cache is safe to consult
+            List<FolderResponse> cached = cache.getIfPresent(email.toLowerCase());
+            if (cached != null) {
+                logger.info("Folders retrieved from cache for: {}", email);
+                return cached;
+            }
+
+            boolean condstore = lease.hasCapability("CONDSTORE");
+            List<String> items = new ArrayList<>(Arrays.asList("MESSAGES", "UNSEEN", "UIDNEXT", "UIDVALIDITY"));
+            if (condstore) {
+                items.add("HIGHESTMODSEQ");
+            }
+            boolean listStatus = lease.hasCapability("LIST-STATUS");
+
+            // Commands are issued on the pooled connection through its selected folder
+            IMAPFolder selected = lease.commandFolder();
+            @SuppressWarnings("unchecked")
+            List<FolderResponse> folders = (List<FolderResponse>) selected.doCommand(p ->
+                    listStatus ? listWithStatus(p, items) : listThenStatus(p, items.toArray(new String[0])));
+
+            cache.put(email.toLowerCase(), folders);
+            logger.info("Retrieved {} folders for: {} (LIST-STATUS: {})", folders.size(), email, listStatus);
+            return folders;
+        } catch (MessagingException e) {
+            logger.error("Failed to fetch folders: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch folders: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a weak ETag for the current state of one folder, taken from a single STATUS
+     * of UIDVALIDITY, UIDNEXT, MESSAGES and HIGHESTMODSEQ without selecting it. Any new,
+     * expunged or re-flagged message changes the tag. Returns null without CONDSTORE, since
+     * flag changes would then go unnoticed.
+     */
+    public String getStateTag(String email, String password, String folder) {
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            return getStateTag(lease, folder);
+        } catch (MessagingException e) {
+            logger.error("Failed to fetch folder state: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch folder state: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Same as {@link #getStateTag(String, String, String)}, on a connection the caller
+     * already holds, e.g. the one a listing is about to run on.
+     */
+    public String getStateTag(ImapConnectionPool.Lease lease, String folder) throws MessagingException {
+        if (!lease.hasCapability("CONDSTORE")) {
+            return null;
+        }
+        Status status = (Status) lease.commandFolder().doCommand(p ->
+                p.status(folder, new String[]{"MESSAGES", "UIDNEXT", "UIDVALIDITY", "HIGHESTMODSEQ"}));
+        return "W/\"" + status.uidvalidity + "-" + status.uidnext + "-" + status.total + "-" + status.highestmodseq + "\"";
+    }
+
+    /**
+     * Returns a weak ETag for a folder list, derived from every folder's counters.
+     */
+    public String getListTag(List<FolderResponse> folders) {
+        StringBuilder state = new StringBuilder();
+        for (FolderResponse folder : folders) {
+            state.append(folder.getName()).append('/').append(folder.getUidValidity()).append('/')
+                    .append(folder.getUidNext()).append('/').append(folder.getMessages()).append('/')
+                    .append(folder.getUnseen()).append('/').append(folder.getHighestModSeq()).append('\n');
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Drops the cached folder list of a mailbox after a change made through this server.
+     */
+    public void invalidate(String email) {
+        cache.invalidate(email.toLowerCase());
+    }
+
+    private List<FolderResponse> listWithStatus(IMAPProtocol p, List<String> items) throws ProtocolException {
+        Response[] responses = p.command("LIST \"\" \"*\" RETURN (STATUS (" + String.join(" ", items) + "))", null);
+        Response result = responses[responses.length - 1];
+
+        List<ListInfo> listed = new ArrayList<>();
+        Map<String, Status> statuses = new HashMap<>();
+        List<Response> unsolicited = new ArrayList<>();
+        for (int i = 0; i < responses.length - 1; i++) {
+            if (!(responses[i] instanceof IMAPResponse)) {
+                unsolicited.add(responses[i]);
+                continue;
+            }
+            IMAPResponse response = (IMAPResponse) responses[i];
+            if (response.keyEquals("LIST")) {
+                listed.add(new ListInfo(response));
+            } else if (response.keyEquals("STATUS")) {
+                Status status = new Status(response);
+                statuses.put(status.mbox, status);
+            } else {
+                unsolicited.add(response);
+            }
+        }
+        p.notifyResponseHandlers(unsolicited.toArray(new Response[0]));
+        p.handleResult(result);
+
+        List<FolderResponse> folders = new ArrayList<>();
+        for (ListInfo info : listed) {
+            Status status = statuses.get(info.name);
+            if (status == null && info.canOpen) {
+                // Servers may leave out STATUS for the selected folder; ask for it directly
+                status = p.status(info.name, items.toArray(new String[0]));
+            }
+            folders.add(toResponse(info, status));
+        }
+        return folders;
+    }
+
+    private List<FolderResponse> listThenStatus(IMAPProtocol p, String[] items) throws ProtocolException {
+        ListInfo[] listed = p.list("", "*");
+        List<FolderResponse> folders = new ArrayList<>();
+        if (listed == null) {
+            return folders;
+        }
+        for (ListInfo info : listed) {
+            folders.add(toResponse(info, info.canOpen ? p.status(info.name, items) : null));
+        }
+        return folders;
+    }
+
+    private FolderResponse toResponse(ListInfo info, Status status) {
+        FolderResponse.FolderResponseBuilder builder = FolderResponse.builder()
+                .name(info.name)
+                .delimiter(info.separator != '\0' ? String.valueOf(info.separator) : null)
+                .attributes(info.attrs != null ? Arrays.asList(info.attrs) : List.of())
+                .selectable(info.canOpen);
+        if (status != null) {
+            builder.messages(status.total >= 0 ? status.total : null)
+                    .unseen(status.unseen >= 0 ? status.unseen : null)
+                    .uidNext(status.uidnext >= 0 ? status.uidnext : null)
+                    .uidValidity(status.uidvalidity >= 0 ? status.uidvalidity : null)
+                    .highestModSeq(status.highestmodseq >= 0 ? status.highestmodseq : null);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,377 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.EmailMessageResponse;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded Lucene full-text index, one on-disk index per mailbox.
+ * <p>
+ * Messages are added as they are parsed by {@link MailReceiveService}, so searching
+ * never goes back to IMAP. Writes are buffered in the index writer and become visible
+ * on the next near-real-time refresh; segments are merged in the background by Lucene's
+ * merge scheduler. Queries support phrases ({@code "quarterly report"}), prefixes
+ * ({@code invoic*}) and field scoping ({@code from:alice}); hits are ranked newest first.
+ */
+@Component
+public class MailFullTextIndex {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailFullTextIndex.class);
+
+    private static final String[] SEARCH_FIELDS = {"subject", "from", "to", "body"};
+
+    // Subject and sender matches rank above a passing mention in the body
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of("subject", 3f, "from", 2f, "to", 1f, "body", 1f);
+
+    private static final Sort RECENCY = new Sort(new SortField("received", SortField.Type.LONG, true), SortField.FIELD_SCORE);
+
+    @Autowired
+    private MailPreviewService mailPreviewService;
+
+    @Value("${mail.server.search.index-path:./data/search-index}")
+    private String indexPath;
+
+    @Value("${mail.server.search.ram-buffer-mb:16}")
+    private double ramBufferMb;
+
+    @Value("${mail.server.search.refresh-interval:1000}")
+    private long refreshIntervalMs;
+
+    @Value("${mail.server.search.commit-interval:60000}")
+    private long commitIntervalMs;
+
+    @Value("${mail.server.search.idle-timeout:600000}")
+    private long idleTimeoutMs;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Map<String, MailboxIndex> indexes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService maintenance;
+
+    @PostConstruct
+    public void init() {
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mail-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::commitAndCloseIdle, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Full-text index initialised at {}", Paths.get(indexPath).toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+        for (String mailbox : new ArrayList<>(indexes.keySet())) {
+            closeIndex(mailbox);
+        }
+    }
+
+    /**
+     * Adds or replaces a parsed message in its mailbox index.
+     */
+    public void index(String mailbox, String folder, EmailMessageResponse message) {
+        if (message.getUidValidity() == null || message.getMessageId() == null) {
+            return;
+        }
+        try {
+            withIndex(mailbox, index -> {
+                index.writer.updateDocument(idTerm(folder, message.getUidValidity(), message.getMessageId()), toDocument(folder, message));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // Indexing is best effort and must never fail the read that fed it
+            logger.warn("Failed to index message {} for {}: {}", message.getMessageId(), mailbox, e.getMessage());
+        }
+    }
+
+    public void delete(String mailbox, String folder, long uidValidity, long uid) {
+        delete(mailbox, folder, uidValidity, List.of(uid));
+    }
+
+    /**
+     * Removes messages that were expunged or moved out of a folder.
+     */
+    public void delete(String mailbox, String folder, long uidValidity, Collection<Long> uids) {
+        try {
+            withIndex(mailbox, index -> {
+                Term[] terms = uids.stream().map(uid -> idTerm(folder, uidValidity, uid)).toArray(Term[]::new);
+                index.writer.deleteDocuments(terms);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to remove {} messages from index for {}: {}", uids.size(), mailbox, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes every message of a folder indexed under a UIDVALIDITY other than the current
+     * one. After the folder was recreated those UIDs refer to nothing.
+     */
+    public void deleteStale(String mailbox, String folder, long uidValidity) {
+        try {
+            withIndex(mailbox, index -> {
+                index.writer.deleteDocuments(new BooleanQuery.Builder()
+                        .add(new TermQuery(new Term("folder", folder)), BooleanClause.Occur.MUST)
+                        .add(new TermQuery(new Term("epoch", epoch(folder, uidValidity))), BooleanClause.Occur.MUST_NOT)
+                        .build());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to remove stale {} messages from index for {}: {}", folder, mailbox, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a query against a mailbox index, optionally restricted to one folder, and
+     * returns up to {@code limit} hits newest first together with the total hit count.
+     */
+    public SearchResult search(String mailbox, String folder, String queryText, int limit) {
+        Query query = parse(queryText, folder);
+        return withIndex(mailbox, index -> {
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                TopFieldDocs top = searcher.search(query, limit, RECENCY);
+                StoredFields storedFields = searcher.storedFields();
+                List<EmailSummaryResponse> hits = new ArrayList<>();
+                for (ScoreDoc scoreDoc : top.scoreDocs) {
+                    hits.add(toSummary(storedFields.document(scoreDoc.doc)));
+                }
+                return new SearchResult(hits, top.totalHits.value);
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        });
+    }
+
+    private Query parse(String queryText, String folder) {
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(SEARCH_FIELDS, analyzer, FIELD_BOOSTS);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        parser.setAllowLeadingWildcard(false);
+        Query parsed;
+        try {
+            parsed = parser.parse(queryText);
+        } catch (ParseException e) {
+            throw new RuntimeException("Invalid search query: " + e.getMessage(), e);
+        }
+        if (folder == null) {
+            return parsed;
+        }
+        return new BooleanQuery.Builder()
+                .add(parsed, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term("folder", folder)), BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    private Document toDocument(String folder, EmailMessageResponse message) {
+        Document document = new Document();
+        document.add(new StringField("id", id(folder, message.getUidValidity(), message.getMessageId()), Field.Store.NO));
+        document.add(new StringField("folder", folder, Field.Store.YES));
+        document.add(new StringField("epoch", epoch(folder, message.getUidValidity()), Field.Store.NO));
+        document.add(new StoredField("uid", message.getMessageId()));
+        document.add(new StoredField("uidValidity", message.getUidValidity()));
+        if (message.getSubject() != null) {
+            document.add(new TextField("subject", message.getSubject(), Field.Store.YES));
+        }
+        if (message.getFrom() != null) {
+            document.add(new TextField("from", message.getFrom(), Field.Store.YES));
+        }
+        if (message.getTo() != null) {
+            document.add(new TextField("to", String.join(" ", message.getTo()), Field.Store.NO));
+        }
+        String body = mailPreviewService.toPlainText(message.getBody(), Boolean.TRUE.equals(message.getIsHtml()));
+        if (body != null) {
+            document.add(new TextField("body", body, Field.Store.NO));
+            String preview = message.getPreview() != null ? message.getPreview() : mailPreviewService.toSnippet(body, false);
+            document.add(new StoredField("preview", preview));
+        }
+        Date received = message.getReceivedDate() != null ? message.getReceivedDate() : message.getSentDate();
+        long receivedMillis = received != null ? received.getTime() : 0L;
+        document.add(new NumericDocValuesField("received", receivedMillis));
+        document.add(new StoredField("received", receivedMillis));
+        return document;
+    }
+
+    private EmailSummaryResponse toSummary(Document document) {
+        long received = document.getField("received").numericValue().longValue();
+        return EmailSummaryResponse.builder()
+                .messageId(document.getField("uid").numericValue().longValue())
+                .uidValidity(document.getField("uidValidity").numericValue().longValue())
+                .folder(document.get("folder"))
+                .subject(document.get("subject"))
+                .from(document.get("from"))
+                .preview(document.get("preview"))
+                .receivedDate(received > 0 ? new Date(received) : null)
+                .build();
+    }
+
+    private Term idTerm(String folder, long uidValidity, long uid) {
+        return new Term("id", id(folder, uidValidity, uid));
+    }
+
+    private String id(String folder, long uidValidity, long uid) {
+        return epoch(folder, uidValidity) + "/" + uid;
+    }
+
+    private String epoch(String folder, long uidValidity) {
+        return folder + "/" + uidValidity;
+    }
+
+    /**
+     * Runs an operation against an open mailbox index. The read lock keeps the index
+     * from being closed underneath the operation; a closed index is simply reopened.
+     */
+    private <T> T withIndex(String mailbox, IndexOperation<T> operation) {
+        String key = mailbox.toLowerCase();
+        while (true) {
+            MailboxIndex index = indexes.computeIfAbsent(key, this::openIndex);
+            index.lock.readLock().lock();
+            try {
+                if (index.closed) {
+                    continue;
+                }
+                index.lastUsed = System.currentTimeMillis();
+                return operation.apply(index);
+            } catch (IOException e) {
+                logger.error("Full-text index operation failed for {}: {}", key, e.getMessage(), e);
+                throw new RuntimeException("Full-text index operation failed: " + e.getMessage(), e);
+            } finally {
+                index.lock.readLock().unlock();
+            }
+        }
+    }
+
+    private MailboxIndex openIndex(String mailbox) {
+        try {
+            // Without separators and with no leading dot the name can never be "." or ".."
+            Path path = Paths.get(indexPath, mailbox.replaceAll("[^a-z0-9._@-]", "_").replaceFirst("^\\.", "_"));
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setRAMBufferSizeMB(ramBufferMb)
+                    .setMergePolicy(new TieredMergePolicy());
+            IndexWriter writer = new IndexWriter(FSDirectory.open(path), config);
+            logger.info("Opened full-text index for {} ({} documents)", mailbox, writer.getDocStats().numDocs);
+            return new MailboxIndex(writer, new SearcherManager(writer, null));
+        } catch (IOException e) {
+            logger.error("Failed to open full-text index for {}: {}", mailbox, e.getMessage(), e);
+            throw new RuntimeException("Failed to open full-text index: " + e.getMessage(), e);
+        }
+    }
+
+    private void refresh() {
+        for (Map.Entry<String, MailboxIndex> entry : indexes.entrySet()) {
+            try {
+                entry.getValue().searcherManager.maybeRefresh();
+            } catch (Exception e) {
+                logger.warn("Failed to refresh full-text index for {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void commitAndCloseIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, MailboxIndex> entry : indexes.entrySet()) {
+            MailboxIndex index = entry.getValue();
+            if (now - index.lastUsed > idleTimeoutMs) {
+                closeIndex(entry.getKey());
+                continue;
+            }
+            try {
+                if (index.writer.hasUncommittedChanges()) {
+                    index.writer.commit();
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to commit full-text index for {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void closeIndex(String mailbox) {
+        // Closing inside compute keeps a new writer from opening while the old one holds the lock
+        indexes.computeIfPresent(mailbox, (key, index) -> {
+            index.lock.writeLock().lock();
+            try {
+                index.closed = true;
+                index.searcherManager.close();
+                index.writer.close();
+                logger.info("Closed full-text index for {}", key);
+            } catch (Exception e) {
+                logger.warn("Error closing full-text index for {}: {}", key, e.getMessage());
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    public record SearchResult(List<EmailSummaryResponse> hits, long totalHits) {
+    }
+
+    @FunctionalInterface
+    private interface IndexOperation<T> {
+        T apply(MailboxIndex index) throws IOException;
+    }
+
+    private static class MailboxIndex {
+        private final IndexWriter writer;
+        private final SearcherManager searcherManager;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean closed;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private MailboxIndex(IndexWriter writer, SearcherManager searcherManager) {
+            this.writer = writer;
+            this.searcherManager = searcherManager;
+        }
+    }
+}
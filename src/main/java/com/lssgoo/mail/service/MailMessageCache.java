@@ -0,0 +1,100 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.dtos.response.EmailMessageResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Size-bounded cache of parsed messages keyed by (mailbox, folder, UIDVALIDITY, UID).
+ * <p>
+ * Entries are weighed by their body size and evicted with Caffeine's W-TinyLFU policy.
+ * Hit, miss and eviction counts are published as {@code mail.message.cache} metrics.
+ */
+@Component
+public class MailMessageCache {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailMessageCache.class);
+
+    // Approximate fixed cost of an entry besides its body (headers, addresses, key)
+    private static final int ENTRY_OVERHEAD_BYTES = 1024;
+
+    @Value("${mail.server.cache.messages.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${mail.server.cache.messages.ttl:600000}")
+    private long ttlMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Key, EmailMessageResponse> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, EmailMessageResponse message) -> weigh(message))
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "mail.message.cache");
+        logger.info("Message cache initialised (max bytes: {}, ttl: {} ms)", maxBytes, ttlMs);
+    }
+
+    public EmailMessageResponse get(String mailbox, String folder, long uidValidity, long uid) {
+        return cache.getIfPresent(new Key(mailbox.toLowerCase(), folder, uidValidity, uid));
+    }
+
+    public void put(String mailbox, String folder, EmailMessageResponse message) {
+        if (message.getUidValidity() == null || message.getMessageId() == null) {
+            return;
+        }
+        cache.put(new Key(mailbox.toLowerCase(), folder, message.getUidValidity(), message.getMessageId()), message);
+    }
+
+    public void invalidate(String mailbox, String folder, long uidValidity, long uid) {
+        cache.invalidate(new Key(mailbox.toLowerCase(), folder, uidValidity, uid));
+    }
+
+    /**
+     * Drops the messages of a folder cached under any UIDVALIDITY other than the current
+     * one. After the folder was recreated those entries can never be hit again.
+     */
+    public void invalidateStale(String mailbox, String folder, long uidValidity) {
+        String key = mailbox.toLowerCase();
+        cache.asMap().keySet().removeIf(k -> k.mailbox().equals(key) && k.folder().equals(folder)
+                && k.uidValidity() != uidValidity);
+    }
+
+    /**
+     * Drops every cached message of a mailbox, e.g. after it was deleted.
+     */
+    public void invalidateMailbox(String mailbox) {
+        String key = mailbox.toLowerCase();
+        cache.asMap().keySet().removeIf(k -> k.mailbox().equals(key));
+    }
+
+    private int weigh(EmailMessageResponse message) {
+        long weight = ENTRY_OVERHEAD_BYTES;
+        if (message.getBody() != null) {
+            weight += message.getBody().length() * 2L;
+        }
+        if (message.getAttachments() != null) {
+            weight += message.getAttachments().size() * 128L;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private record Key(String mailbox, String folder, long uidValidity, long uid) {
+    }
+}
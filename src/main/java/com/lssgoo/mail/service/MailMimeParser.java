@@ -0,0 +1,199 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.EmailAttachmentResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimePart;
+import jakarta.mail.internet.MimeUtility;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a message's full MIME tree with bounded memory.
+ * <p>
+ * The structure comes from BODYSTRUCTURE, so only the one text part chosen as the body is
+ * downloaded, in fetch-size blocks, and decoded incrementally. At most {@code max-body-bytes}
+ * of it are kept; longer bodies are cut and flagged as truncated. Every other leaf is
+ * returned as an attachment reference carrying its IMAP section, to be streamed on demand.
+ */
+@Component
+public class MailMimeParser {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailMimeParser.class);
+
+    @Value("${mail.server.parser.max-body-bytes:1048576}")
+    private int maxBodyBytes;
+
+    public ParsedContent parse(Part message) throws MessagingException, IOException {
+        Walk walk = new Walk();
+        if (message.isMimeType("multipart/*")) {
+            walk.multipart((Multipart) message.getContent(), "");
+        } else {
+            // A single-part message is its own part 1
+            walk.leaf(message, "1");
+        }
+
+        // An HTML alternative renders the same content more faithfully, so it wins over plain text
+        Part bodyPart = walk.html != null ? walk.html : walk.plain;
+        String body = null;
+        boolean truncated = false;
+        if (bodyPart != null) {
+            StringBuilder text = new StringBuilder();
+            truncated = readBounded(bodyPart, text);
+            body = text.toString();
+        }
+        return new ParsedContent(body, walk.html != null, truncated, walk.attachments);
+    }
+
+    /**
+     * Reads a text part into {@code target}, decoding transfer encoding and charset as the
+     * bytes arrive. Returns true when the part was longer than the configured cap.
+     */
+    private boolean readBounded(Part part, StringBuilder target) throws MessagingException, IOException {
+        try (InputStream raw = part.getInputStream();
+             Reader reader = new InputStreamReader(new BoundedInputStream(raw, maxBodyBytes), charsetOf(part))) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                target.append(buffer, 0, read);
+            }
+            // One more byte past the cap means the body was cut
+            return raw.read() != -1;
+        }
+    }
+
+    private Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
+            }
+        } catch (Exception e) {
+            logger.debug("Unsupported charset in {}, falling back to UTF-8", e.getMessage());
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Result of a walk: the chosen body (possibly truncated) and all attachment references.
+     */
+    public record ParsedContent(String body, boolean html, boolean truncated, List<EmailAttachmentResponse> attachments) {
+    }
+
+    private static class Walk {
+        private Part plain;
+        private Part html;
+        private final List<EmailAttachmentResponse> attachments = new ArrayList<>();
+
+        private void multipart(Multipart multipart, String prefix) throws MessagingException, IOException {
+            for (int i = 0; i < multipart.getCount(); i++) {
+                Part part = multipart.getBodyPart(i);
+                String section = prefix + (i + 1);
+                if (part.isMimeType("multipart/*")) {
+                    multipart((Multipart) part.getContent(), section + ".");
+                } else {
+                    leaf(part, section);
+                }
+            }
+        }
+
+        private void leaf(Part part, String section) throws MessagingException {
+            boolean attachment = Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())
+                    || (part.getFileName() != null && !part.isMimeType("text/*"));
+            if (!attachment && part.isMimeType("text/plain")) {
+                if (plain == null) {
+                    plain = part;
+                    return;
+                }
+            } else if (!attachment && part.isMimeType("text/html")) {
+                if (html == null) {
+                    html = part;
+                    return;
+                }
+            }
+            // Anything else, including inline images and forwarded message/rfc822, is a lazy reference
+            attachments.add(EmailAttachmentResponse.builder()
+                    .partId(section)
+                    .filename(decodeFileName(part.getFileName()))
+                    .contentType(baseType(part.getContentType()))
+                    .size((long) part.getSize())
+                    .contentId(part instanceof MimePart ? ((MimePart) part).getContentID() : null)
+                    .build());
+        }
+
+        private String decodeFileName(String fileName) {
+            if (fileName == null) {
+                return null;
+            }
+            try {
+                return MimeUtility.decodeText(fileName);
+            } catch (Exception e) {
+                return fileName;
+            }
+        }
+
+        private String baseType(String contentType) {
+            try {
+                return new ContentType(contentType).getBaseType();
+            } catch (Exception e) {
+                return contentType;
+            }
+        }
+    }
+
+    /**
+     * Passes through at most {@code limit} bytes and then reports end of stream, leaving
+     * the rest of the underlying stream unread.
+     */
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read != -1) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The caller owns the underlying stream
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.request.SendEmailRequest;
+import com.lssgoo.mail.dtos.response.OutboxStatusResponse;
+import com.lssgoo.mail.entity.OutboxMessage;
+import com.lssgoo.mail.repository.OutboxMessageRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable queue for outbound mail backed by the {@code mail_outbox} table.
+ * <p>
+ * Enqueueing is a single INSERT, so the HTTP thread never waits for SMTP. A fixed set of
+ * workers claims due rows with {@code FOR UPDATE SKIP LOCKED}, which lets any number of
+ * workers and application instances share the table without double delivery, and sends
+ * them through the pooled SMTP transports. Failed attempts are retried with exponential
+ * backoff and jitter; permanent failures and messages out of attempts are dead-lettered.
+ * The sender's password is kept AES-GCM encrypted only while the message is pending.
+ * On shutdown workers finish the message in hand and hand back the rest of their batch.
+ */
+@Service
+public class MailOutboxService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailOutboxService.class);
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private static final int IV_LENGTH = 12;
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private MailServerSendService mailServerSendService;
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailRateShaper mailRateShaper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.server.outbox.workers:4}")
+    private int workers;
+
+    @Value("${mail.server.outbox.batch-size:10}")
+    private int batchSize;
+
+    @Value("${mail.server.outbox.poll-interval:1000}")
+    private long pollIntervalMs;
+
+    @Value("${mail.server.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.server.outbox.initial-backoff:30000}")
+    private long initialBackoffMs;
+
+    @Value("${mail.server.outbox.max-backoff:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${mail.server.outbox.lock-timeout:600000}")
+    private long lockTimeoutMs;
+
+    @Value("${mail.server.outbox.drain-timeout:30000}")
+    private long drainTimeoutMs;
+
+    @Value("${mail.server.outbox.credential-key:}")
+    private String credentialKey;
+
+    @Value("${jwt.secret:}")
+    private String jwtSecret;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Semaphore wakeup = new Semaphore(0);
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private SecretKeySpec key;
+    private ExecutorService executor;
+    private volatile boolean running;
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter deadCounter;
+
+    @PostConstruct
+    public void init() throws Exception {
+        if (credentialKey == null || credentialKey.isBlank()) {
+            throw new IllegalStateException("mail.server.outbox.credential-key must be set");
+        }
+        if (credentialKey.equals(jwtSecret)) {
+            // A leaked signing key must not also decrypt every queued mailbox password
+            throw new IllegalStateException("mail.server.outbox.credential-key must differ from jwt.secret");
+        }
+        key = new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+                .digest(credentialKey.getBytes(StandardCharsets.UTF_8)), "AES");
+
+        sentCounter = meterRegistry.counter("mail.outbox.sent");
+        retriedCounter = meterRegistry.counter("mail.outbox.retried");
+        deadCounter = meterRegistry.counter("mail.outbox.dead");
+        meterRegistry.gauge("mail.outbox.busy", busy);
+
+        running = true;
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "mail-outbox-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+        logger.info("Mail outbox started with {} workers", workers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Draining mail outbox");
+        running = false;
+        wakeup.release(workers);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS)) {
+                // Whatever is still in flight is retried after lock-timeout by another instance or restart
+                logger.warn("Mail outbox did not drain within {} ms", drainTimeoutMs);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stores a message for asynchronous delivery and returns its status, including the
+     * queue ID to poll. The credentials are checked first, so only a sender who can log in
+     * gets a row in the table.
+     */
+    public OutboxStatusResponse enqueue(String email, String password, SendEmailRequest request) {
+        logger.info("Queueing email from: {} to: {}", email, request.getTo());
+        imapConnectionPool.authenticate(email, password);
+
+        OutboxMessage message = new OutboxMessage();
+        message.setQueueId(UUID.randomUUID().toString());
+        message.setSender(email);
+        message.setCredential(encrypt(password));
+        message.setToAddress(request.getTo());
+        message.setCcAddresses(join(request.getCc()));
+        message.setBccAddresses(join(request.getBcc()));
+        message.setSubject(request.getSubject());
+        message.setBody(request.getBody());
+        message.setIsHtml(Boolean.TRUE.equals(request.getIsHtml()));
+        message.setStatus(STATUS_QUEUED);
+        message.setAttempts(0);
+        message.setNextAttemptAt(LocalDateTime.now());
+        OutboxMessage saved = outboxMessageRepository.save(message);
+
+        // Wake one idle worker instead of waiting for its next poll
+        wakeup.release();
+        logger.info("Email queued as {} from: {}", saved.getQueueId(), email);
+        return toResponse(saved);
+    }
+
+    /**
+     * Returns the status of a queued message. Only its sender can see it, so the
+     * credentials are checked against IMAP like every other mailbox request.
+     */
+    public OutboxStatusResponse getStatus(String email, String password, String queueId) {
+        imapConnectionPool.authenticate(email, password);
+        OutboxMessage message = outboxMessageRepository.findByQueueId(queueId)
+                .filter(m -> m.getSender().equalsIgnoreCase(email))
+                .orElseThrow(() -> new RuntimeException("Queued message not found: " + queueId));
+        return toResponse(message);
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                outboxMessageRepository.recoverExpired(LocalDateTime.now().minusNanos(lockTimeoutMs * 1_000_000));
+                List<OutboxMessage> claimed = outboxMessageRepository.claimDue(LocalDateTime.now(), batchSize);
+                if (claimed.isEmpty()) {
+                    wakeup.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                for (int i = 0; i < claimed.size(); i++) {
+                    if (!running) {
+                        List<Long> unattempted = new ArrayList<>();
+                        for (OutboxMessage message : claimed.subList(i, claimed.size())) {
+                            unattempted.add(message.getId());
+                        }
+                        outboxMessageRepository.release(unattempted);
+                        break;
+                    }
+                    deliver(claimed.get(i));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Mail outbox worker failed: {}", e.getMessage(), e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    private void deliver(OutboxMessage message) {
+        long waitMs = mailRateShaper.tryAcquire(message.getSender(), recipients(message));
+        if (waitMs > 0) {
+            defer(message, waitMs);
+            return;
+        }
+        busy.incrementAndGet();
+        try {
+            mailServerSendService.sendEmail(
+                    message.getSender(),
+                    decrypt(message.getCredential()),
+                    message.getToAddress(),
+                    split(message.getCcAddresses()),
+                    split(message.getBccAddresses()),
+                    message.getSubject(),
+                    message.getBody(),
+                    Boolean.TRUE.equals(message.getIsHtml()));
+            message.setStatus(STATUS_SENT);
+            message.setSentAt(LocalDateTime.now());
+            message.setCredential(null);
+            message.setLastError(null);
+            sentCounter.increment();
+        } catch (RuntimeException e) {
+            message.setLastError(e.getMessage());
+            if (isPermanent(e) || message.getAttempts() >= maxAttempts) {
+                message.setStatus(STATUS_DEAD);
+                message.setCredential(null);
+                deadCounter.increment();
+                logger.warn("Dead-lettered queued email {} after {} attempts: {}", message.getQueueId(), message.getAttempts(), e.getMessage());
+            } else {
+                message.setStatus(STATUS_QUEUED);
+                message.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMs(message.getAttempts()) * 1_000_000));
+                retriedCounter.increment();
+                logger.info("Queued email {} failed attempt {}, retrying at {}", message.getQueueId(), message.getAttempts(), message.getNextAttemptAt());
+            }
+        } finally {
+            message.setLockedAt(null);
+            outboxMessageRepository.save(message);
+            busy.decrementAndGet();
+        }
+    }
+
+    /**
+     * Puts a message over its sending rate back in the queue until its buckets refill. A
+     * deferral is not a failed attempt, so it does not count towards max-attempts.
+     */
+    private void defer(OutboxMessage message, long waitMs) {
+        message.setStatus(STATUS_QUEUED);
+        message.setAttempts(message.getAttempts() - 1);
+        message.setNextAttemptAt(LocalDateTime.now().plusNanos(waitMs * 1_000_000));
+        message.setLockedAt(null);
+        outboxMessageRepository.save(message);
+    }
+
+    private List<String> recipients(OutboxMessage message) {
+        List<String> recipients = new ArrayList<>();
+        recipients.add(message.getToAddress());
+        for (String addresses : new String[]{message.getCcAddresses(), message.getBccAddresses()}) {
+            String[] split = split(addresses);
+            if (split != null) {
+                recipients.addAll(Arrays.asList(split));
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Exponential backoff with jitter, so messages failing together do not retry together.
+     */
+    private long backoffMs(int attempts) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Rejected credentials and 5xx replies will fail the same way on every retry.
+     */
+    static boolean isPermanent(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = next(cause)) {
+            if (cause instanceof AuthenticationFailedException) {
+                return true;
+            }
+            if (cause instanceof SMTPAddressFailedException && ((SMTPAddressFailedException) cause).getReturnCode() >= 500) {
+                return true;
+            }
+            if (cause instanceof SMTPSendFailedException && ((SMTPSendFailedException) cause).getReturnCode() >= 500) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(Throwable error) {
+        if (error instanceof MessagingException && ((MessagingException) error).getNextException() != null) {
+            return ((MessagingException) error).getNextException();
+        }
+        return error.getCause();
+    }
+
+    private String encrypt(String value) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to protect mailbox credentials", e);
+        }
+    }
+
+    private String decrypt(String value) {
+        if (value == null) {
+            throw new RuntimeException("Credentials of queued message are no longer available");
+        }
+        try {
+            byte[] data = Base64.getDecoder().decode(value);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, data, 0, IV_LENGTH));
+            return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read mailbox credentials", e);
+        }
+    }
+
+    private String join(List<String> addresses) {
+        return addresses != null && !addresses.isEmpty() ? String.join(",", addresses) : null;
+    }
+
+    private String[] split(String addresses) {
+        return addresses != null && !addresses.isBlank()
+                ? Arrays.stream(addresses.split(",")).map(String::trim).toArray(String[]::new)
+                : null;
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private OutboxStatusResponse toResponse(OutboxMessage message) {
+        return OutboxStatusResponse.builder()
+                .queueId(message.getQueueId())
+                .status(message.getStatus())
+                .attempts(message.getAttempts())
+                .nextAttemptAt(STATUS_QUEUED.equals(message.getStatus()) ? message.getNextAttemptAt() : null)
+                .lastError(message.getLastError())
+                .createdAt(message.getCreatedAt())
+                .sentAt(message.getSentAt())
+                .build();
+    }
+}
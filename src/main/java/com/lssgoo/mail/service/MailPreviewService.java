@@ -0,0 +1,426 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimePart;
+import jakarta.mail.internet.MimeUtility;
+import org.eclipse.angus.mail.iap.ByteArray;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.BODY;
+import org.eclipse.angus.mail.imap.protocol.FetchResponse;
+import org.eclipse.angus.mail.imap.protocol.MessageSet;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds list-view metadata from BODYSTRUCTURE without downloading message bodies.
+ * <p>
+ * Attachment detection walks the prefetched structure only. Previews are produced
+ * from a partial {@code BODY.PEEK[section]<0.n>} fetch of the first text part,
+ * issued as one FETCH per distinct section for the whole page. Snippets are computed
+ * once per message and kept keyed by mailbox, folder, UIDVALIDITY and UID, so repeated
+ * listings only fetch previews for messages not seen before.
+ */
+@Service
+public class MailPreviewService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailPreviewService.class);
+
+    // Attribution lines that introduce a quoted reply, e.g. "On Mon, 3 Feb 2025, Alice wrote:"
+    private static final Pattern QUOTE_HEADER = Pattern.compile("(?i)^(on\\s.{1,200}\\swrote:?|-{2,}\\s*original message\\s*-{2,})$");
+
+    // Blocks without visible text, and what ends each; <body> implicitly ends an unclosed <head>
+    private static final Pattern BLOCK_OPEN = Pattern.compile("(?i)<(script|style|head)\\b[^>]*>");
+    private static final Pattern SCRIPT_CLOSE = Pattern.compile("(?i)</script\\s*>");
+    private static final Pattern STYLE_CLOSE = Pattern.compile("(?i)</style\\s*>");
+    private static final Pattern HEAD_CLOSE = Pattern.compile("(?i)</head\\s*>|<body\\b");
+
+    @Value("${mail.server.preview.fetch-bytes:2048}")
+    private int previewFetchBytes;
+
+    // Upper bound when a preview is re-fetched because a <style> or <head> block filled the first window
+    @Value("${mail.server.preview.max-fetch-bytes:16384}")
+    private int previewMaxFetchBytes;
+
+    @Value("${mail.server.preview.length:200}")
+    private int previewLength;
+
+    @Value("${mail.server.preview.cache-size:100000}")
+    private long cacheSize;
+
+    private Cache<String, String> snippets;
+
+    @PostConstruct
+    public void init() {
+        snippets = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Returns true when any part of the message is an attachment. Only reads the
+     * structure already loaded with {@code FetchProfile.Item.CONTENT_INFO}.
+     */
+    public boolean hasAttachments(Message message) {
+        try {
+            if (!message.isMimeType("multipart/*")) {
+                return Part.ATTACHMENT.equalsIgnoreCase(message.getDisposition());
+            }
+            return hasAttachments((Multipart) message.getContent());
+        } catch (Exception e) {
+            logger.debug("Failed to inspect body structure: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Fetches preview snippets for the given messages, keyed by message number.
+     */
+    public Map<Integer, String> fetchPreviews(Folder folder, Message[] messages) {
+        Map<Integer, String> previews = new HashMap<>();
+        if (messages.length == 0) {
+            return previews;
+        }
+
+        // Group messages by the section of their first text part so each group is one FETCH
+        Map<String, List<TextSection>> bySection = new LinkedHashMap<>();
+        for (Message message : messages) {
+            String cached = snippets.getIfPresent(snippetKey(message));
+            if (cached != null) {
+                previews.put(message.getMessageNumber(), cached);
+                continue;
+            }
+            try {
+                TextSection section = findTextSection(message);
+                if (section != null) {
+                    section.key = snippetKey(message);
+                    bySection.computeIfAbsent(section.section, k -> new ArrayList<>()).add(section);
+                }
+            } catch (Exception e) {
+                logger.debug("Failed to locate text part of message {}: {}", message.getMessageNumber(), e.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, List<TextSection>> entry : bySection.entrySet()) {
+            try {
+                fetchSection((IMAPFolder) folder, entry.getKey(), entry.getValue(), previews, previewFetchBytes);
+            } catch (Exception e) {
+                logger.warn("Failed to fetch previews for section {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        return previews;
+    }
+
+    /**
+     * Computes the snippet of a fully parsed message body and remembers it, so later
+     * listings of the same message do not fetch a preview again.
+     */
+    public String snippetFor(Message message, String body, boolean isHtml) {
+        String snippet = toSnippet(body, isHtml);
+        String key = snippetKey(message);
+        if (snippet != null && key != null) {
+            snippets.put(key, snippet);
+        }
+        return snippet;
+    }
+
+    /**
+     * Collapses a text or HTML body into a single-line plaintext snippet without quoted
+     * replies or signatures.
+     */
+    public String toSnippet(String text, boolean isHtml) {
+        if (text == null) {
+            return null;
+        }
+        String plain = normalize(stripQuoted(isHtml ? stripHtml(stripHtmlQuotes(text)) : text));
+        if (plain.length() > previewLength) {
+            plain = plain.substring(0, previewLength).trim();
+        }
+        return plain;
+    }
+
+    /**
+     * Converts a text or HTML body to whitespace-normalised plaintext.
+     */
+    public String toPlainText(String text, boolean isHtml) {
+        if (text == null) {
+            return null;
+        }
+        return normalize(isHtml ? stripHtml(text) : text);
+    }
+
+    private String normalize(String text) {
+        return text.replace('\uFFFD', ' ').replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Drops {@code >}-quoted lines and everything from a reply attribution or signature
+     * delimiter on. Falls back to the original text if nothing would be left.
+     */
+    private String stripQuoted(String text) {
+        StringBuilder kept = new StringBuilder();
+        for (String line : text.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith(">")) {
+                continue;
+            }
+            if (trimmed.equals("--") || QUOTE_HEADER.matcher(trimmed).matches()) {
+                break;
+            }
+            kept.append(line).append('\n');
+        }
+        return kept.toString().isBlank() ? text : kept.toString();
+    }
+
+    private String stripHtmlQuotes(String html) {
+        return html
+                .replaceAll("(?is)<blockquote[^>]*>.*?(</blockquote>|$)", " ")
+                .replaceAll("(?is)<div[^>]*class=\"[^\"]*(gmail_quote|moz-cite-prefix)[^\"]*\".*$", " ");
+    }
+
+    private String snippetKey(Message message) {
+        try {
+            Folder folder = message.getFolder();
+            UIDFolder uidFolder = (UIDFolder) folder;
+            String mailbox = folder.getStore().getURLName().getUsername();
+            return mailbox.toLowerCase() + "/" + folder.getFullName() + "/" + uidFolder.getUIDValidity() + "/" + uidFolder.getUID(message);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the first {@code bytes} of one section for a group of messages. HTML cut off
+     * inside a {@code <head>}, {@code <style>} or {@code <script>} block holds no visible
+     * text yet, so those messages are fetched again with a larger window; at the limit the
+     * preview keeps only the text before the unclosed block.
+     */
+    private void fetchSection(IMAPFolder folder, String section, List<TextSection> sections,
+                              Map<Integer, String> previews, int bytes) throws MessagingException {
+        Map<Integer, TextSection> byNumber = new HashMap<>();
+        int[] numbers = new int[sections.size()];
+        for (int i = 0; i < sections.size(); i++) {
+            numbers[i] = sections.get(i).messageNumber;
+            byNumber.put(numbers[i], sections.get(i));
+        }
+
+        String item = "BODY.PEEK[" + section + "]<0." + bytes + ">";
+        Response[] responses = (Response[]) folder.doCommand(p -> {
+            Response[] r = p.fetch(MessageSet.createMessageSets(numbers), item);
+            List<Response> unsolicited = new ArrayList<>();
+            for (int i = 0; i < r.length - 1; i++) {
+                if (!(r[i] instanceof FetchResponse) || ((FetchResponse) r[i]).getItem(BODY.class) == null) {
+                    unsolicited.add(r[i]);
+                }
+            }
+            p.notifyResponseHandlers(unsolicited.toArray(new Response[0]));
+            p.handleResult(r[r.length - 1]);
+            return r;
+        });
+
+        List<TextSection> truncated = new ArrayList<>();
+        for (Response response : responses) {
+            if (!(response instanceof FetchResponse)) {
+                continue;
+            }
+            FetchResponse fetch = (FetchResponse) response;
+            BODY body = fetch.getItem(BODY.class);
+            TextSection text = byNumber.get(fetch.getNumber());
+            if (body == null || text == null) {
+                continue;
+            }
+            ByteArray data = body.getByteArray();
+            boolean partial = data.getCount() >= bytes;
+            int length = partial ? completeLength(data.getBytes(), data.getStart(), data.getCount(), text.encoding) : data.getCount();
+            try (InputStream raw = new ByteArrayInputStream(data.getBytes(), data.getStart(), length);
+                 InputStream decoded = MimeUtility.decode(raw, text.encoding)) {
+                String content = new String(decoded.readAllBytes(), text.charset);
+                if (text.html && partial) {
+                    int unclosed = unclosedBlock(content);
+                    if (unclosed >= 0 && bytes < previewMaxFetchBytes) {
+                        truncated.add(text);
+                        continue;
+                    }
+                    if (unclosed >= 0) {
+                        content = content.substring(0, unclosed);
+                    }
+                }
+                String snippet = toSnippet(content, text.html);
+                previews.put(text.messageNumber, snippet);
+                if (text.key != null) {
+                    snippets.put(text.key, snippet);
+                }
+            } catch (Exception e) {
+                logger.debug("Failed to decode preview of message {}: {}", text.messageNumber, e.getMessage());
+            }
+        }
+
+        if (!truncated.isEmpty()) {
+            fetchSection(folder, section, truncated, previews, Math.min(bytes * 4, previewMaxFetchBytes));
+        }
+    }
+
+    /**
+     * Length of a partially fetched section cut back to whole encoded units: a window can
+     * end inside a base64 quantum or a quoted-printable escape, which the decoders would
+     * reject or mangle.
+     */
+    static int completeLength(byte[] raw, int start, int count, String encoding) {
+        if ("base64".equalsIgnoreCase(encoding)) {
+            // Line breaks may fall anywhere, so count only alphabet characters
+            int quantum = 0;
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                byte c = raw[start + i];
+                if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                        || c == '+' || c == '/' || c == '=') {
+                    if (++quantum == 4) {
+                        quantum = 0;
+                        length = i + 1;
+                    }
+                }
+            }
+            return length;
+        }
+        if ("quoted-printable".equalsIgnoreCase(encoding)) {
+            if (count >= 1 && raw[start + count - 1] == '=') {
+                return count - 1;
+            }
+            if (count >= 2 && raw[start + count - 2] == '=') {
+                return count - 2;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the offset of the first script, style or head block left open at the end of
+     * truncated HTML, or -1 when every such block is closed.
+     */
+    private int unclosedBlock(String html) {
+        Matcher open = BLOCK_OPEN.matcher(html);
+        int from = 0;
+        while (from < html.length() && open.find(from)) {
+            Matcher close = (open.group(1).equalsIgnoreCase("head") ? HEAD_CLOSE
+                    : open.group(1).equalsIgnoreCase("style") ? STYLE_CLOSE : SCRIPT_CLOSE).matcher(html);
+            if (!close.find(open.end())) {
+                return open.start();
+            }
+            from = close.end();
+        }
+        return -1;
+    }
+
+    private TextSection findTextSection(Message message) throws MessagingException, IOException {
+        if (!message.isMimeType("multipart/*")) {
+            if (message.isMimeType("text/plain") || message.isMimeType("text/html")) {
+                return new TextSection(message.getMessageNumber(), "TEXT", message);
+            }
+            return null;
+        }
+        TextSection[] found = new TextSection[2]; // [0] = text/plain, [1] = text/html
+        findTextSection(message.getMessageNumber(), (Multipart) message.getContent(), "", found);
+        return found[0] != null ? found[0] : found[1];
+    }
+
+    private void findTextSection(int messageNumber, Multipart multipart, String prefix, TextSection[] found)
+            throws MessagingException, IOException {
+        for (int i = 0; i < multipart.getCount() && found[0] == null; i++) {
+            BodyPart part = multipart.getBodyPart(i);
+            String section = prefix + (i + 1);
+            if (part.isMimeType("multipart/*")) {
+                findTextSection(messageNumber, (Multipart) part.getContent(), section + ".", found);
+            } else if (!Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
+                if (part.isMimeType("text/plain")) {
+                    found[0] = new TextSection(messageNumber, section, part);
+                } else if (part.isMimeType("text/html") && found[1] == null) {
+                    found[1] = new TextSection(messageNumber, section, part);
+                }
+            }
+        }
+    }
+
+    private boolean hasAttachments(Multipart multipart) throws MessagingException, IOException {
+        for (int i = 0; i < multipart.getCount(); i++) {
+            BodyPart part = multipart.getBodyPart(i);
+            if (part.isMimeType("multipart/*")) {
+                if (hasAttachments((Multipart) part.getContent())) {
+                    return true;
+                }
+            } else if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())
+                    || (part.getFileName() != null && !part.isMimeType("text/*"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String stripHtml(String html) {
+        return html
+                // Only closed blocks: an unclosed one would swallow the rest of the document
+                .replaceAll("(?is)<(script|style|head)\\b[^>]*>.*?</\\1\\s*>", " ")
+                // <body> implicitly ends a <head> whose closing tag was omitted
+                .replaceAll("(?is)<head\\b[^>]*>.*?(?=<body\\b)", " ")
+                .replaceAll("(?i)<(br|/p|/div|/li|/tr|/h[1-6])[^>]*>", "\n")
+                .replaceAll("(?s)<[^>]*>?", " ")
+                .replace("&nbsp;", " ")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&amp;", "&");
+    }
+
+    private static class TextSection {
+        private final int messageNumber;
+        private final String section;
+        private final String encoding;
+        private final Charset charset;
+        private final boolean html;
+        private String key;
+
+        private TextSection(int messageNumber, String section, Part part) throws MessagingException {
+            this.messageNumber = messageNumber;
+            this.section = section;
+            String transferEncoding = part instanceof MimePart ? ((MimePart) part).getEncoding() : null;
+            this.encoding = transferEncoding != null ? transferEncoding : "7bit";
+            this.html = part.isMimeType("text/html");
+            this.charset = resolveCharset(part.getContentType());
+        }
+
+        private static Charset resolveCharset(String contentType) {
+            try {
+                String charset = new ContentType(contentType).getParameter("charset");
+                if (charset != null) {
+                    return Charset.forName(MimeUtility.javaCharset(charset));
+                }
+            } catch (Exception e) {
+                // Fall through to the default for unknown or malformed charsets
+            }
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
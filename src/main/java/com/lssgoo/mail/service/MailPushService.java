@@ -0,0 +1,359 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.exceptions.TooManyWatchersException;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MessageChangedEvent;
+import jakarta.mail.event.MessageChangedListener;
+import jakarta.mail.event.MessageCountAdapter;
+import jakarta.mail.event.MessageCountEvent;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.MessageVanishedEvent;
+import org.eclipse.angus.mail.imap.ResyncData;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes INBOX changes to clients over Server-Sent Events.
+ * <p>
+ * One IMAP IDLE watcher is kept per mailbox on a dedicated connection and shared by all
+ * of that mailbox's subscribers. New messages are sent as {@code new-message} events
+ * carrying envelope summaries, expunges as {@code expunge} and flag updates as
+ * {@code flags}. The watcher stops when its last subscriber disconnects.
+ * <p>
+ * Listeners run on the store's event-dispatch thread, so fetching the envelopes of new
+ * messages is handed to a small pool; a slow FETCH then never holds up the events of
+ * other mailboxes.
+ */
+@Service
+public class MailPushService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailPushService.class);
+
+    private static final String WATCHED_FOLDER = "INBOX";
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailReceiveService mailReceiveService;
+
+    @Value("${mail.server.push.max-watchers:200}")
+    private int maxWatchers;
+
+    @Value("${mail.server.push.emitter-timeout:1800000}")
+    private long emitterTimeoutMs;
+
+    // Servers drop IDLE after ~30 minutes, so it is re-issued well before that
+    @Value("${mail.server.push.idle-refresh:600000}")
+    private long idleRefreshMs;
+
+    @Value("${mail.server.push.fetch-threads:4}")
+    private int fetchThreads;
+
+    private final Map<String, MailboxWatcher> watchers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService keepAlive;
+    private ExecutorService fetcher;
+
+    @PostConstruct
+    public void init() {
+        keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "imap-idle-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepAlive.scheduleWithFixedDelay(this::refreshIdle, idleRefreshMs, idleRefreshMs, TimeUnit.MILLISECONDS);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        fetcher = Executors.newFixedThreadPool(fetchThreads, r -> {
+            Thread thread = new Thread(r, "imap-push-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Stopping {} mailbox watchers", watchers.size());
+        keepAlive.shutdownNow();
+        fetcher.shutdownNow();
+        for (MailboxWatcher watcher : new ArrayList<>(watchers.values())) {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Attaches a subscriber to the mailbox's watcher, starting one if needed. Throws
+     * {@link TooManyWatchersException} when that would exceed the watcher limit.
+     */
+    public SseEmitter subscribe(String email, String password) {
+        // Authenticate the subscriber before attaching it to a possibly shared watcher
+        imapConnectionPool.authenticate(email, password);
+
+        String mailbox = email.toLowerCase();
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        MailboxWatcher attached = null;
+        while (attached == null) {
+            MailboxWatcher candidate = watchers.computeIfAbsent(mailbox, k -> {
+                if (watchers.size() >= maxWatchers) {
+                    throw new TooManyWatchersException("Too many mailbox watchers, try again later");
+                }
+                MailboxWatcher created = new MailboxWatcher(mailbox, email, password);
+                created.start();
+                return created;
+            });
+            candidate.addSubscriber(emitter);
+            if (candidate.running) {
+                attached = candidate;
+            } else {
+                // Lost a race with the last subscriber leaving; start a fresh watcher
+                candidate.subscribers.remove(emitter);
+            }
+        }
+        MailboxWatcher watcher = attached;
+
+        emitter.onCompletion(() -> watcher.removeSubscriber(emitter));
+        emitter.onTimeout(() -> watcher.removeSubscriber(emitter));
+        emitter.onError(e -> watcher.removeSubscriber(emitter));
+
+        logger.info("Push subscriber added for: {} ({} active)", mailbox, watcher.subscribers.size());
+        return emitter;
+    }
+
+    private void refreshIdle() {
+        for (MailboxWatcher watcher : watchers.values()) {
+            watcher.refresh();
+        }
+    }
+
+    private class MailboxWatcher implements Runnable {
+
+        private final String mailbox;
+        private final String email;
+        private final String password;
+        private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+        private volatile boolean running = true;
+        private volatile Store store;
+        private volatile IMAPFolder folder;
+        private Thread thread;
+
+        private MailboxWatcher(String mailbox, String email, String password) {
+            this.mailbox = mailbox;
+            this.email = email;
+            this.password = password;
+        }
+
+        private void start() {
+            thread = new Thread(this, "imap-idle-" + mailbox);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void addSubscriber(SseEmitter emitter) {
+            subscribers.add(emitter);
+        }
+
+        private void removeSubscriber(SseEmitter emitter) {
+            subscribers.remove(emitter);
+            if (subscribers.isEmpty() && watchers.remove(mailbox, this)) {
+                stop();
+            }
+        }
+
+        private synchronized void stop() {
+            if (!running) {
+                return;
+            }
+            running = false;
+            closeConnection();
+            if (thread != null) {
+                thread.interrupt();
+            }
+            for (SseEmitter emitter : subscribers) {
+                emitter.complete();
+            }
+        }
+
+        private void refresh() {
+            IMAPFolder current = folder;
+            try {
+                if (current != null && current.isOpen()) {
+                    // Any command on the folder ends the pending IDLE; the loop re-enters it
+                    current.getMessageCount();
+                }
+            } catch (Exception e) {
+                logger.debug("IDLE refresh failed for {}: {}", mailbox, e.getMessage());
+            }
+        }
+
+        @Override
+        public void run() {
+            long backoffMs = 1000;
+            while (running) {
+                try {
+                    open();
+                    backoffMs = 1000;
+                    while (running && folder.isOpen()) {
+                        folder.idle();
+                    }
+                    closeConnection();
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    logger.warn("IDLE watcher for {} failed, reconnecting in {} ms: {}", mailbox, backoffMs, e.getMessage());
+                    send("error", Map.of("message", "Mailbox connection lost, reconnecting"));
+                    closeConnection();
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    backoffMs = Math.min(backoffMs * 2, 60000);
+                }
+            }
+            closeConnection();
+        }
+
+        private void open() throws Exception {
+            store = imapConnectionPool.openDedicated(email, password);
+            IMAPFolder opened = (IMAPFolder) store.getFolder(WATCHED_FOLDER);
+            if (((IMAPStore) store).hasCapability("QRESYNC")) {
+                // QRESYNC makes the server report expunges as VANISHED with UIDs
+                opened.open(Folder.READ_ONLY, new ResyncData(opened.getUIDValidity(), opened.getHighestModSeq()));
+            } else {
+                opened.open(Folder.READ_ONLY);
+            }
+            opened.addMessageCountListener(new MessageCountAdapter() {
+                @Override
+                public void messagesAdded(MessageCountEvent event) {
+                    onMessagesAdded(event.getMessages());
+                }
+
+                @Override
+                public void messagesRemoved(MessageCountEvent event) {
+                    onMessagesRemoved(event);
+                }
+            });
+            opened.addMessageChangedListener(new MessageChangedListener() {
+                @Override
+                public void messageChanged(MessageChangedEvent event) {
+                    if (event.getMessageChangeType() == MessageChangedEvent.FLAGS_CHANGED) {
+                        onFlagsChanged(event.getMessage());
+                    }
+                }
+            });
+            folder = opened;
+            send("ready", Map.of("folder", WATCHED_FOLDER, "uidValidity", opened.getUIDValidity()));
+        }
+
+        private void onMessagesAdded(Message[] messages) {
+            IMAPFolder current = folder;
+            if (current == null) {
+                return;
+            }
+            try {
+                fetcher.execute(() -> {
+                    try {
+                        for (EmailSummaryResponse summary : mailReceiveService.summarize(current, messages)) {
+                            send("new-message", summary);
+                        }
+                    } catch (Exception e) {
+                        logger.warn("Failed to push new messages for {}: {}", mailbox, e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Dropped new-message push for {} during shutdown", mailbox);
+            }
+        }
+
+        private void onMessagesRemoved(MessageCountEvent event) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("folder", WATCHED_FOLDER);
+            if (event instanceof MessageVanishedEvent) {
+                payload.put("uids", ((MessageVanishedEvent) event).getUIDs());
+            } else {
+                List<Long> uids = new ArrayList<>();
+                for (Message message : event.getMessages()) {
+                    try {
+                        uids.add(((UIDFolder) folder).getUID(message));
+                    } catch (Exception e) {
+                        // UID was never loaded for this message; the client has to re-list
+                    }
+                }
+                payload.put("uids", uids);
+                payload.put("complete", uids.size() == event.getMessages().length);
+            }
+            send("expunge", payload);
+        }
+
+        private void onFlagsChanged(Message message) {
+            try {
+                Flags flags = message.getFlags();
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("folder", WATCHED_FOLDER);
+                payload.put("messageId", ((UIDFolder) folder).getUID(message));
+                payload.put("isRead", flags.contains(Flags.Flag.SEEN));
+                payload.put("isFlagged", flags.contains(Flags.Flag.FLAGGED));
+                payload.put("isAnswered", flags.contains(Flags.Flag.ANSWERED));
+                payload.put("isDeleted", flags.contains(Flags.Flag.DELETED));
+                send("flags", payload);
+            } catch (Exception e) {
+                logger.debug("Failed to push flag change for {}: {}", mailbox, e.getMessage());
+            }
+        }
+
+        private void send(String eventName, Object payload) {
+            for (SseEmitter emitter : subscribers) {
+                try {
+                    emitter.send(SseEmitter.event().name(eventName).data(payload));
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        private void closeConnection() {
+            IMAPFolder current = folder;
+            folder = null;
+            try {
+                if (current != null && current.isOpen()) {
+                    current.close(false);
+                }
+            } catch (Exception e) {
+                logger.debug("Error closing watched folder for {}: {}", mailbox, e.getMessage());
+            }
+            Store currentStore = store;
+            store = null;
+            if (currentStore != null) {
+                imapConnectionPool.closeDedicated(currentStore);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.repository.UserRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket shaping of outbound mail per sender, per organisation and per recipient
+ * domain.
+ * <p>
+ * A message takes one token from its sender's bucket, one from its organisation's and one
+ * from each distinct recipient domain's, all or nothing. Buckets refill at a steady rate up
+ * to a burst size, so a tenant can send a burst at once and is then paced, and a single
+ * destination is not flooded into deferring or greylisting us. Callers queue messages that
+ * are not admitted instead of rejecting them.
+ * <p>
+ * Each bucket is one {@link AtomicLong} updated with compare-and-set (the GCRA form of a
+ * token bucket), so the send path takes no locks. Buckets idle long enough to be full again
+ * are dropped. Metrics are tagged by scope only, never by mailbox or domain: the number of
+ * live buckets ({@code mail.shaping.buckets}) and the lowest level among them
+ * ({@code mail.shaping.tokens.min}).
+ */
+@Component
+public class MailRateShaper {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailRateShaper.class);
+
+    private static final String SCOPE_SENDER = "sender";
+    private static final String SCOPE_ORGANISATION = "organisation";
+    private static final String SCOPE_DOMAIN = "domain";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.server.shaping.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.server.shaping.sender.rate:5}")
+    private double senderRate;
+
+    @Value("${mail.server.shaping.sender.burst:50}")
+    private int senderBurst;
+
+    @Value("${mail.server.shaping.organisation.rate:20}")
+    private double organisationRate;
+
+    @Value("${mail.server.shaping.organisation.burst:200}")
+    private int organisationBurst;
+
+    @Value("${mail.server.shaping.domain.rate:10}")
+    private double domainRate;
+
+    @Value("${mail.server.shaping.domain.burst:100}")
+    private int domainBurst;
+
+    private Cache<String, Bucket> buckets;
+    private Cache<String, Optional<Long>> organisations;
+
+    @PostConstruct
+    public void init() {
+        long refillNanos = Math.max(TimeUnit.SECONDS.toNanos(1), Math.max(Math.max(fullRefillNanos(senderRate, senderBurst),
+                fullRefillNanos(organisationRate, organisationBurst)), fullRefillNanos(domainRate, domainBurst)));
+        buckets = Caffeine.newBuilder()
+                // A bucket idle this long is full, so dropping it loses nothing
+                .expireAfterAccess(Duration.ofNanos(refillNanos))
+                .build();
+        for (String scope : List.of(SCOPE_SENDER, SCOPE_ORGANISATION, SCOPE_DOMAIN)) {
+            Gauge.builder("mail.shaping.buckets", () -> count(scope))
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+            Gauge.builder("mail.shaping.tokens.min", () -> minLevel(scope))
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+        }
+        organisations = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+        logger.info("Outbound shaping {} (sender: {}/s burst {}, organisation: {}/s burst {}, domain: {}/s burst {})",
+                enabled ? "enabled" : "disabled", senderRate, senderBurst, organisationRate, organisationBurst, domainRate, domainBurst);
+    }
+
+    /**
+     * Takes the tokens for one message from all its buckets. Returns 0 when the message may
+     * be sent now, or else the number of milliseconds after which it should be retried; no
+     * tokens are then taken.
+     */
+    public long tryAcquire(String sender, Collection<String> recipients) {
+        if (!enabled) {
+            return 0;
+        }
+        List<Bucket> required = buckets(sender, recipients);
+        long now = System.nanoTime();
+        List<Bucket> taken = new ArrayList<>(required.size());
+        for (Bucket bucket : required) {
+            long waitNanos = bucket.tryAcquire(now);
+            if (waitNanos > 0) {
+                for (Bucket acquired : taken) {
+                    acquired.refund();
+                }
+                logger.debug("Deferring message from {}: {} bucket {} is empty for {} ms",
+                        sender, bucket.scope, bucket.key, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                meterRegistry.counter("mail.shaping.deferred", "scope", bucket.scope).increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            taken.add(bucket);
+        }
+        return 0;
+    }
+
+    private List<Bucket> buckets(String sender, Collection<String> recipients) {
+        List<Bucket> required = new ArrayList<>();
+        String mailbox = sender.toLowerCase();
+        if (senderRate > 0) {
+            required.add(bucket(SCOPE_SENDER, mailbox, senderRate, senderBurst));
+        }
+        if (organisationRate > 0) {
+            Optional<Long> organisation = organisations.get(mailbox, userRepository::findOrganisationIdByEmail);
+            organisation.ifPresent(id -> required.add(bucket(SCOPE_ORGANISATION, id.toString(), organisationRate, organisationBurst)));
+        }
+        if (domainRate > 0) {
+            Set<String> domains = new LinkedHashSet<>();
+            for (String recipient : recipients) {
+                int at = recipient.lastIndexOf('@');
+                if (at >= 0) {
+                    domains.add(recipient.substring(at + 1).trim().toLowerCase());
+                }
+            }
+            for (String domain : domains) {
+                required.add(bucket(SCOPE_DOMAIN, domain, domainRate, domainBurst));
+            }
+        }
+        return required;
+    }
+
+    private Bucket bucket(String scope, String key, double rate, int burst) {
+        return buckets.get(scope + ":" + key, k -> new Bucket(scope, key, rate, burst, System.nanoTime()));
+    }
+
+    private long count(String scope) {
+        long count = 0;
+        for (Bucket bucket : buckets.asMap().values()) {
+            if (bucket.scope.equals(scope)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lowest token level among the scope's live buckets, or NaN when it has none; a level
+     * near zero means some sender, organisation or domain is being paced.
+     */
+    private double minLevel(String scope) {
+        double min = Double.NaN;
+        for (Bucket bucket : buckets.asMap().values()) {
+            if (bucket.scope.equals(scope)) {
+                double level = bucket.level();
+                if (Double.isNaN(min) || level < min) {
+                    min = level;
+                }
+            }
+        }
+        return min;
+    }
+
+    private long fullRefillNanos(double rate, int burst) {
+        return rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate * Math.max(1, burst)) : 0;
+    }
+
+    static class Bucket {
+
+        private final String scope;
+        private final String key;
+        // Time one token takes to refill, and how far ahead of now the bucket may be drawn
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        // Theoretical arrival time: when the bucket will be full again if nothing else is taken
+        private final AtomicLong tat;
+
+        Bucket(String scope, String key, double rate, int burst, long now) {
+            this.scope = scope;
+            this.key = key;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+            this.tat = new AtomicLong(now);
+        }
+
+        /**
+         * Takes one token, or returns how long until one is available.
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long ahead = next - now;
+                if (ahead > toleranceNanos) {
+                    return ahead - toleranceNanos;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void refund() {
+            tat.addAndGet(-intervalNanos);
+        }
+
+        /**
+         * Tokens currently available.
+         */
+        double level() {
+            return level(System.nanoTime());
+        }
+
+        double level(long now) {
+            long ahead = Math.max(0, tat.get() - now);
+            return (double) (toleranceNanos - ahead) / intervalNanos;
+        }
+    }
+}
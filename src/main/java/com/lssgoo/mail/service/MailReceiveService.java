@@ -1,33 +1,71 @@
 package com.lssgoo.mail.service;
 
-import com.lssgoo.mail.dtos.response.EmailAttachmentResponse;
 import com.lssgoo.mail.dtos.response.EmailMessageResponse;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.dtos.response.MessagePageResponse;
 import com.lssgoo.mail.utils.LoggerUtil;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
-import jakarta.mail.internet.MimeMessage;
-import jakarta.mail.internet.MimeMultipart;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class MailReceiveService {
 
     private static final Logger logger = LoggerUtil.getLogger(MailReceiveService.class);
 
-    @Value("${mail.server.imap.host:localhost}")
-    private String imapHost;
+    // ENVELOPE on IMAP also pulls INTERNALDATE and RFC822.SIZE, CONTENT_INFO maps to BODYSTRUCTURE
+    private static final FetchProfile LISTING_FETCH_PROFILE = new FetchProfile();
 
-    @Value("${mail.server.imap.port:993}")
-    private Integer imapPort;
+    static {
+        LISTING_FETCH_PROFILE.add(FetchProfile.Item.ENVELOPE);
+        LISTING_FETCH_PROFILE.add(FetchProfile.Item.FLAGS);
+        LISTING_FETCH_PROFILE.add(FetchProfile.Item.SIZE);
+        LISTING_FETCH_PROFILE.add(FetchProfile.Item.CONTENT_INFO);
+        LISTING_FETCH_PROFILE.add(UIDFolder.FetchProfileItem.UID);
+    }
+
+    private static final Pattern ESEARCH_MIN = Pattern.compile("\\bMIN\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailPreviewService mailPreviewService;
+
+    @Autowired
+    private MailMessageCache mailMessageCache;
+
+    @Autowired
+    private MailFullTextIndex mailFullTextIndex;
+
+    @Autowired
+    private MailMimeParser mailMimeParser;
+
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
+    @Autowired
+    private MailFolderService mailFolderService;
 
-    @Value("${mail.server.imap.ssl:true}")
-    private Boolean imapSsl;
+    @Value("${mail.server.stream.max-duration:60000}")
+    private long streamMaxDurationMs;
 
     @Value("${mail.server.username:}")
     private String mailServerUsername;
@@ -36,28 +74,19 @@ public class MailReceiveService {
     private String mailServerPassword;
 
 
-    public List<EmailMessageResponse> getInboxMessages(String email, String password, int limit, int offset) {
+    /**
+     * Returns a page of inbox messages, newest first. When {@code stateTagSink} is given it
+     * receives the folder's state tag, read on the same connection before the listing.
+     */
+    public List<EmailMessageResponse> getInboxMessages(String email, String password, int limit, int offset,
+                                                       Consumer<String> stateTagSink) {
         logger.info("Fetching inbox messages for: {} (limit: {}, offset: {})", email, limit, offset);
         
         List<EmailMessageResponse> messages = new ArrayList<>();
         
-        try {
-            Properties props = new Properties();
-            props.put("mail.imap.host", imapHost);
-            props.put("mail.imap.port", imapPort);
-            props.put("mail.imap.auth", "true");
-
-            if (imapSsl) {
-                props.put("mail.imap.ssl.enable", "true");
-                props.put("mail.imap.ssl.trust", imapHost);
-            }
-
-            Session session = Session.getInstance(props);
-            Store store = session.getStore(imapSsl ? "imaps" : "imap");
-            store.connect(imapHost, imapPort, email, password);
-
-            Folder inbox = store.getFolder("INBOX");
-            inbox.open(Folder.READ_ONLY);
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            reportStateTag(lease, "INBOX", stateTagSink);
+            Folder inbox = lease.openFolder("INBOX", Folder.READ_ONLY);
 
             int totalMessages = inbox.getMessageCount();
             int start = Math.max(1, totalMessages - offset - limit + 1);
@@ -65,14 +94,15 @@ public class MailReceiveService {
 
             if (start <= end && start > 0) {
                 Message[] msgs = inbox.getMessages(start, end);
+                prefetch(inbox, msgs);
                 
                 for (int i = msgs.length - 1; i >= 0; i--) {
-                    messages.add(convertToResponse(msgs[i], "INBOX"));
+                    EmailMessageResponse response = convertToResponse(msgs[i], "INBOX");
+                    mailMessageCache.put(email, "INBOX", response);
+                    mailFullTextIndex.index(email, "INBOX", response);
+                    messages.add(response);
                 }
             }
-
-            inbox.close(false);
-            store.close();
             
             logger.info("Retrieved {} messages from inbox for: {}", messages.size(), email);
         } catch (Exception e) {
@@ -83,32 +113,197 @@ public class MailReceiveService {
         return messages;
     }
 
-    public EmailMessageResponse getMessage(String email, String password, Long messageId, String folder) {
-        logger.info("Fetching message {} from folder {} for: {}", messageId, folder, email);
-        
-        try {
-            Properties props = new Properties();
-            props.put("mail.imap.host", imapHost);
-            props.put("mail.imap.port", imapPort);
-            props.put("mail.imap.auth", "true");
-
-            if (imapSsl) {
-                props.put("mail.imap.ssl.enable", "true");
-                props.put("mail.imap.ssl.trust", imapHost);
+    /**
+     * Streams a page of full messages, newest first, handing each one to the sink as soon
+     * as its body has been parsed. Only the current message is held in memory, so heap use
+     * does not grow with the page size and the first message is sent before the last one
+     * has been downloaded. The pooled connection is held until the client has read the
+     * page, so a stream that runs past {@code mail.server.stream.max-duration} is cut off
+     * and fails; the client resumes at the next offset.
+     */
+    public void streamMessages(String email, String password, String folder, int limit, int offset,
+                               MessageSink sink) throws IOException {
+        String folderName = folder != null ? folder : "INBOX";
+        logger.info("Streaming {} messages for: {} (limit: {}, offset: {})", folderName, email, limit, offset);
+
+        int streamed = 0;
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            Folder emailFolder = lease.openFolder(folderName, Folder.READ_ONLY);
+
+            int totalMessages = emailFolder.getMessageCount();
+            int start = Math.max(1, totalMessages - offset - limit + 1);
+            int end = totalMessages - offset;
+
+            if (start <= end && start > 0) {
+                Message[] msgs = emailFolder.getMessages(start, end);
+                // Metadata for the whole page in one FETCH; bodies are then read one message at a time
+                prefetch(emailFolder, msgs);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(streamMaxDurationMs);
+                for (int i = msgs.length - 1; i >= 0; i--) {
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new RuntimeException("Stream time limit reached after " + streamed + " messages");
+                    }
+                    EmailMessageResponse response;
+                    try {
+                        response = convertToResponse(msgs[i], folderName);
+                    } catch (IOException e) {
+                        // A failed read from IMAP is a server error, unlike a failed write to the client
+                        throw new MessagingException("Failed to read message: " + e.getMessage(), e);
+                    }
+                    mailMessageCache.put(email, folderName, response);
+                    mailFullTextIndex.index(email, folderName, response);
+                    sink.accept(response);
+                    streamed++;
+                }
+            }
+
+            logger.info("Streamed {} messages from {} for: {}", streamed, folderName, email);
+        } catch (IOException e) {
+            // The client went away; nothing left to send
+            logger.info("Stream of {} closed by client after {} messages for: {}", folderName, streamed, email);
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to stream messages: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to stream messages: " + e.getMessage(), e);
+        }
+    }
+
+    public List<EmailSummaryResponse> getInboxSummaries(String email, String password, int limit, int offset,
+                                                        Consumer<String> stateTagSink) {
+        return getFolderSummaries(email, password, "INBOX", limit, offset, stateTagSink);
+    }
+
+    public List<EmailSummaryResponse> getFolderSummaries(String email, String password, String folder, int limit, int offset) {
+        return getFolderSummaries(email, password, folder, limit, offset, null);
+    }
+
+    /**
+     * Returns a page of summaries, newest first. When {@code stateTagSink} is given it
+     * receives the folder's state tag, read on the same connection before the listing.
+     */
+    public List<EmailSummaryResponse> getFolderSummaries(String email, String password, String folder, int limit, int offset,
+                                                         Consumer<String> stateTagSink) {
+        logger.info("Fetching {} summaries for: {} (limit: {}, offset: {})", folder, email, limit, offset);
+
+        List<EmailSummaryResponse> summaries = new ArrayList<>();
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            reportStateTag(lease, folder, stateTagSink);
+            Folder emailFolder = lease.openFolder(folder, Folder.READ_ONLY);
+
+            int totalMessages = emailFolder.getMessageCount();
+            int start = Math.max(1, totalMessages - offset - limit + 1);
+            int end = totalMessages - offset;
+
+            if (start <= end && start > 0) {
+                summaries.addAll(summarize(emailFolder, emailFolder.getMessages(start, end)));
             }
 
-            Session session = Session.getInstance(props);
-            Store store = session.getStore(imapSsl ? "imaps" : "imap");
-            store.connect(imapHost, imapPort, email, password);
+            logger.info("Retrieved {} {} summaries for: {}", summaries.size(), folder, email);
+        } catch (Exception e) {
+            logger.error("Failed to fetch {} summaries: {}", folder, e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch " + folder + " summaries: " + e.getMessage(), e);
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Returns one page of full messages, positioned by an opaque cursor instead of an
+     * offset. Without a cursor the newest messages are returned. When {@code stateTagSink}
+     * is given it receives the folder's state tag, read on the same connection first.
+     */
+    public MessagePageResponse<EmailMessageResponse> getMessagePage(String email, String password, String folder,
+                                                                   String cursor, int limit, Consumer<String> stateTagSink) {
+        String folderName = folder != null ? folder : "INBOX";
+        logger.info("Fetching {} message page for: {} (limit: {}, cursor: {})", folderName, email, limit, cursor != null);
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            reportStateTag(lease, folderName, stateTagSink);
+            IMAPFolder emailFolder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_ONLY);
+            PageRange range = resolvePage(emailFolder, PageCursor.decode(cursor), limit);
+            prefetch(emailFolder, range.messages());
+
+            List<EmailMessageResponse> messages = new ArrayList<>();
+            for (int i = range.messages().length - 1; i >= 0; i--) {
+                EmailMessageResponse response = convertToResponse(range.messages()[i], folderName);
+                mailMessageCache.put(email, folderName, response);
+                mailFullTextIndex.index(email, folderName, response);
+                messages.add(response);
+            }
+
+            logger.info("Retrieved {} messages of {} page for: {}", messages.size(), folderName, email);
+            return toPage(emailFolder, range, messages);
+        } catch (Exception e) {
+            logger.error("Failed to fetch message page: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch message page: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns one page of summaries, positioned by an opaque cursor instead of an offset.
+     * When {@code stateTagSink} is given it receives the folder's state tag first.
+     */
+    public MessagePageResponse<EmailSummaryResponse> getSummaryPage(String email, String password, String folder,
+                                                                   String cursor, int limit, Consumer<String> stateTagSink) {
+        String folderName = folder != null ? folder : "INBOX";
+        logger.info("Fetching {} summary page for: {} (limit: {}, cursor: {})", folderName, email, limit, cursor != null);
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            reportStateTag(lease, folderName, stateTagSink);
+            IMAPFolder emailFolder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_ONLY);
+            PageRange range = resolvePage(emailFolder, PageCursor.decode(cursor), limit);
+            List<EmailSummaryResponse> summaries = summarize(emailFolder, range.messages());
+
+            logger.info("Retrieved {} summaries of {} page for: {}", summaries.size(), folderName, email);
+            return toPage(emailFolder, range, summaries);
+        } catch (Exception e) {
+            logger.error("Failed to fetch summary page: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch summary page: " + e.getMessage(), e);
+        }
+    }
 
-            Folder emailFolder = store.getFolder(folder != null ? folder : "INBOX");
-            emailFolder.open(Folder.READ_ONLY);
+    /**
+     * Converts messages of an open folder to summaries, newest first, using one
+     * metadata FETCH and one partial preview FETCH per text section.
+     */
+    public List<EmailSummaryResponse> summarize(Folder folder, Message[] msgs) throws MessagingException {
+        List<EmailSummaryResponse> summaries = new ArrayList<>();
+        prefetch(folder, msgs);
+        Map<Integer, String> previews = mailPreviewService.fetchPreviews(folder, msgs);
+
+        for (int i = msgs.length - 1; i >= 0; i--) {
+            summaries.add(convertToSummary(msgs[i], folder.getFullName(), previews.get(msgs[i].getMessageNumber())));
+        }
+        return summaries;
+    }
 
-            Message message = emailFolder.getMessage(messageId.intValue());
-            EmailMessageResponse response = convertToResponse(message, folder != null ? folder : "INBOX");
+    public EmailMessageResponse getMessage(String email, String password, Long messageId, Long uidValidity, String folder) {
+        logger.info("Fetching message {} from folder {} for: {}", messageId, folder, email);
+        
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            String folderName = folder != null ? folder : "INBOX";
+            Folder emailFolder = lease.openFolder(folderName, Folder.READ_ONLY);
+            long currentUidValidity = ((UIDFolder) emailFolder).getUIDValidity();
+            if (uidValidity != null && uidValidity != currentUidValidity) {
+                mailMessageCache.invalidateStale(email, folderName, currentUidValidity);
+                mailFullTextIndex.deleteStale(email, folderName, currentUidValidity);
+            }
+            checkUidValidity((UIDFolder) emailFolder, uidValidity);
 
-            emailFolder.close(false);
-            store.close();
+            // Borrowing the lease above has authenticated the caller, so the cache is safe to consult
+            EmailMessageResponse response = mailMessageCache.get(email, folderName, currentUidValidity, messageId);
+            if (response != null) {
+                logger.info("Message retrieved from cache: {}", messageId);
+                return response;
+            }
+
+            Message message = getMessageByUid(emailFolder, messageId, uidValidity);
+            prefetch(emailFolder, new Message[]{message});
+            response = convertToResponse(message, folderName);
+            mailMessageCache.put(email, folderName, response);
+            mailFullTextIndex.index(email, folderName, response);
             
             logger.info("Message retrieved successfully: {}", messageId);
             return response;
@@ -118,32 +313,16 @@ public class MailReceiveService {
         }
     }
 
-    public void markAsRead(String email, String password, Long messageId, String folder) {
+    public void markAsRead(String email, String password, Long messageId, Long uidValidity, String folder) {
         logger.info("Marking message {} as read in folder {} for: {}", messageId, folder, email);
         
-        try {
-            Properties props = new Properties();
-            props.put("mail.imap.host", imapHost);
-            props.put("mail.imap.port", imapPort);
-            props.put("mail.imap.auth", "true");
-
-            if (imapSsl) {
-                props.put("mail.imap.ssl.enable", "true");
-                props.put("mail.imap.ssl.trust", imapHost);
-            }
-
-            Session session = Session.getInstance(props);
-            Store store = session.getStore(imapSsl ? "imaps" : "imap");
-            store.connect(imapHost, imapPort, email, password);
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            Folder emailFolder = lease.openFolder(folder != null ? folder : "INBOX", Folder.READ_WRITE);
 
-            Folder emailFolder = store.getFolder(folder != null ? folder : "INBOX");
-            emailFolder.open(Folder.READ_WRITE);
-
-            Message message = emailFolder.getMessage(messageId.intValue());
+            Message message = getMessageByUid(emailFolder, messageId, uidValidity);
             message.setFlag(Flags.Flag.SEEN, true);
-
-            emailFolder.close(true);
-            store.close();
+            mailMessageCache.invalidate(email, folder != null ? folder : "INBOX", ((UIDFolder) emailFolder).getUIDValidity(), messageId);
+            mailFolderService.invalidate(email);
             
             logger.info("Message marked as read: {}", messageId);
         } catch (Exception e) {
@@ -152,32 +331,20 @@ public class MailReceiveService {
         }
     }
 
-    public void deleteMessage(String email, String password, Long messageId, String folder) {
+    public void deleteMessage(String email, String password, Long messageId, Long uidValidity, String folder) {
         logger.info("Deleting message {} from folder {} for: {}", messageId, folder, email);
         
-        try {
-            Properties props = new Properties();
-            props.put("mail.imap.host", imapHost);
-            props.put("mail.imap.port", imapPort);
-            props.put("mail.imap.auth", "true");
-
-            if (imapSsl) {
-                props.put("mail.imap.ssl.enable", "true");
-                props.put("mail.imap.ssl.trust", imapHost);
-            }
-
-            Session session = Session.getInstance(props);
-            Store store = session.getStore(imapSsl ? "imaps" : "imap");
-            store.connect(imapHost, imapPort, email, password);
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            Folder emailFolder = lease.openFolder(folder != null ? folder : "INBOX", Folder.READ_WRITE);
 
-            Folder emailFolder = store.getFolder(folder != null ? folder : "INBOX");
-            emailFolder.open(Folder.READ_WRITE);
-
-            Message message = emailFolder.getMessage(messageId.intValue());
+            Message message = getMessageByUid(emailFolder, messageId, uidValidity);
             message.setFlag(Flags.Flag.DELETED, true);
-
-            emailFolder.close(true);
-            store.close();
+            // The folder stays selected for the next borrower, so expunge explicitly
+            emailFolder.expunge();
+            mailMessageCache.invalidate(email, folder != null ? folder : "INBOX", ((UIDFolder) emailFolder).getUIDValidity(), messageId);
+            mailFullTextIndex.delete(email, folder != null ? folder : "INBOX", ((UIDFolder) emailFolder).getUIDValidity(), messageId);
+            mailAttachmentStore.unlinkMessage(email, folder != null ? folder : "INBOX", ((UIDFolder) emailFolder).getUIDValidity(), messageId);
+            mailFolderService.invalidate(email);
             
             logger.info("Message deleted: {}", messageId);
         } catch (Exception e) {
@@ -186,21 +353,206 @@ public class MailReceiveService {
         }
     }
 
-    private EmailMessageResponse convertToResponse(Message message, String folder) throws Exception {
-        EmailMessageResponse.EmailMessageResponseBuilder builder = EmailMessageResponse.builder();
+    public List<EmailMessageResponse> getMessagesByUID(String email, String password, String folder,
+                                                       Long startUid, Long endUid, Long uidValidity) {
+        logger.info("Fetching messages by UID {}:{} from folder {} for: {}", startUid, endUid, folder, email);
 
-        builder.messageId((long) message.getMessageNumber());
-        // Use message number as UID if IMAP UID is not available
-        try {
-            if (message instanceof MimeMessage) {
-                // Try to get UID using reflection or use message number
-                builder.messageUid(String.valueOf(message.getMessageNumber()));
-            } else {
-                builder.messageUid(String.valueOf(message.getMessageNumber()));
+        List<EmailMessageResponse> messages = new ArrayList<>();
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            String folderName = folder != null ? folder : "INBOX";
+            Folder emailFolder = lease.openFolder(folderName, Folder.READ_ONLY);
+            checkUidValidity((UIDFolder) emailFolder, uidValidity);
+
+            long start = startUid != null ? startUid : 1L;
+            long end = endUid != null ? endUid : UIDFolder.MAXUID;
+            Message[] msgs = ((UIDFolder) emailFolder).getMessagesByUID(start, end);
+            prefetch(emailFolder, msgs);
+
+            for (int i = msgs.length - 1; i >= 0; i--) {
+                if (msgs[i] != null) {
+                    EmailMessageResponse response = convertToResponse(msgs[i], folderName);
+                    mailMessageCache.put(email, folderName, response);
+                    mailFullTextIndex.index(email, folderName, response);
+                    messages.add(response);
+                }
             }
+
+            logger.info("Retrieved {} messages by UID from folder {} for: {}", messages.size(), folderName, email);
         } catch (Exception e) {
-            builder.messageUid(String.valueOf(message.getMessageNumber()));
+            logger.error("Failed to fetch messages by UID: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch messages by UID: " + e.getMessage(), e);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Loads envelope, flags, size, body structure and UID for the whole range in a
+     * single FETCH so the per-message getters below are served from the cache.
+     */
+    private void prefetch(Folder folder, Message[] messages) throws MessagingException {
+        if (messages.length == 0) {
+            return;
+        }
+        folder.fetch(messages, LISTING_FETCH_PROFILE);
+    }
+
+    /**
+     * Maps a cursor to the exact sequence range of its page. Sequence numbers are only used
+     * within this session, anchored at the cursor's UID, so mail arriving or being expunged
+     * between pages never shifts or repeats what the client sees. The page itself is then
+     * loaded with a single FETCH of that range.
+     */
+    private PageRange resolvePage(IMAPFolder folder, PageCursor cursor, int limit) throws MessagingException {
+        int total = folder.getMessageCount();
+        int start;
+        int end;
+        if (cursor == null) {
+            end = total;
+            start = Math.max(1, end - limit + 1);
+        } else {
+            checkUidValidity(folder, cursor.uidValidity());
+            if (cursor.older()) {
+                end = firstSeqAtOrAfter(folder, cursor.uid(), total) - 1;
+                start = Math.max(1, end - limit + 1);
+            } else {
+                start = firstSeqAtOrAfter(folder, cursor.uid() + 1, total);
+                end = Math.min(total, start + limit - 1);
+            }
+        }
+        Message[] messages = start <= end ? folder.getMessages(start, end) : new Message[0];
+        return new PageRange(cursor, messages, start > 1, end < total);
+    }
+
+    /**
+     * Sequence number of the first message whose UID is at least {@code uid}, or
+     * {@code total + 1} if there is none. The common case of an anchor that still exists
+     * costs one {@code UID FETCH}; an expunged anchor falls back to {@code SEARCH UID uid:*},
+     * asking only for the minimum when the server supports ESEARCH.
+     */
+    private int firstSeqAtOrAfter(IMAPFolder folder, long uid, int total) throws MessagingException {
+        Message anchor = folder.getMessageByUID(uid);
+        if (anchor != null) {
+            return anchor.getMessageNumber();
+        }
+        int first = (int) folder.doCommand(p -> {
+            boolean esearch = p.hasCapability("ESEARCH");
+            Response[] responses = p.command("SEARCH " + (esearch ? "RETURN (MIN) " : "") + "UID " + uid + ":*", null);
+            Response result = responses[responses.length - 1];
+            int min = Integer.MAX_VALUE;
+            List<Response> unsolicited = new ArrayList<>();
+            for (int i = 0; i < responses.length - 1; i++) {
+                if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals("SEARCH")) {
+                    int seq;
+                    while ((seq = responses[i].readNumber()) != -1) {
+                        min = Math.min(min, seq);
+                    }
+                } else if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals("ESEARCH")) {
+                    Matcher matcher = ESEARCH_MIN.matcher(responses[i].toString());
+                    if (matcher.find()) {
+                        min = Math.min(min, Integer.parseInt(matcher.group(1)));
+                    }
+                } else {
+                    unsolicited.add(responses[i]);
+                }
+            }
+            p.notifyResponseHandlers(unsolicited.toArray(new Response[0]));
+            p.handleResult(result);
+            return min;
+        });
+        if (first > total) {
+            return total + 1;
+        }
+        // "uid:*" still matches the last message when every UID is below uid
+        return folder.getUID(folder.getMessage(first)) >= uid ? first : total + 1;
+    }
+
+    private <T> MessagePageResponse<T> toPage(IMAPFolder folder, PageRange range, List<T> items) throws MessagingException {
+        long uidValidity = folder.getUIDValidity();
+        Message[] messages = range.messages();
+        String olderCursor = null;
+        String newerCursor;
+        if (messages.length > 0) {
+            if (range.hasOlder()) {
+                olderCursor = new PageCursor(uidValidity, folder.getUID(messages[0]), true).encode();
+            }
+            newerCursor = new PageCursor(uidValidity, folder.getUID(messages[messages.length - 1]), false).encode();
+        } else if (range.cursor() != null && !range.cursor().older()) {
+            // Nothing new yet: the client keeps polling from the same position
+            newerCursor = range.cursor().encode();
+        } else {
+            newerCursor = new PageCursor(uidValidity, Math.max(0, folder.getUIDNext() - 1), false).encode();
+        }
+        return MessagePageResponse.<T>builder()
+                .folder(folder.getFullName())
+                .uidValidity(uidValidity)
+                .messages(items)
+                .olderCursor(olderCursor)
+                .newerCursor(newerCursor)
+                .hasOlder(range.hasOlder())
+                .hasNewer(range.hasNewer())
+                .build();
+    }
+
+    /**
+     * Hands the folder's state tag to the sink, if any. It is read before the listing, so a
+     * change racing with the listing makes the tag stale rather than the page.
+     */
+    private void reportStateTag(ImapConnectionPool.Lease lease, String folder, Consumer<String> stateTagSink)
+            throws MessagingException {
+        if (stateTagSink != null) {
+            stateTagSink.accept(mailFolderService.getStateTag(lease, folder));
         }
+    }
+
+    private Message getMessageByUid(Folder folder, Long uid, Long uidValidity) throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) folder;
+        checkUidValidity(uidFolder, uidValidity);
+        Message message = uidFolder.getMessageByUID(uid);
+        if (message == null) {
+            throw new RuntimeException("Message not found: " + uid);
+        }
+        return message;
+    }
+
+    private void checkUidValidity(UIDFolder folder, Long uidValidity) throws MessagingException {
+        // UIDs are only meaningful within one UIDVALIDITY epoch of the folder
+        if (uidValidity != null && uidValidity != folder.getUIDValidity()) {
+            throw new RuntimeException("UIDVALIDITY changed for folder, message IDs must be re-listed");
+        }
+    }
+
+    private EmailSummaryResponse convertToSummary(Message message, String folder, String preview) throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) message.getFolder();
+        List<String> fromList = getAddresses(message.getFrom());
+
+        return EmailSummaryResponse.builder()
+                .messageId(uidFolder.getUID(message))
+                .uidValidity(uidFolder.getUIDValidity())
+                .from(fromList.isEmpty() ? null : fromList.get(0))
+                .to(getAddresses(message.getRecipients(Message.RecipientType.TO)))
+                .cc(getAddresses(message.getRecipients(Message.RecipientType.CC)))
+                .subject(message.getSubject())
+                .sentDate(message.getSentDate())
+                .receivedDate(message.getReceivedDate())
+                .isRead(message.isSet(Flags.Flag.SEEN))
+                .isFlagged(message.isSet(Flags.Flag.FLAGGED))
+                .size((long) message.getSize())
+                .hasAttachments(mailPreviewService.hasAttachments(message))
+                .preview(preview)
+                .folder(folder)
+                .build();
+    }
+
+    private EmailMessageResponse convertToResponse(Message message, String folder) throws Exception {
+        EmailMessageResponse.EmailMessageResponseBuilder builder = EmailMessageResponse.builder();
+
+        UIDFolder uidFolder = (UIDFolder) message.getFolder();
+        long uid = uidFolder.getUID(message);
+        builder.messageId(uid);
+        builder.messageUid(String.valueOf(uid));
+        builder.uidValidity(uidFolder.getUIDValidity());
         List<String> fromList = getAddresses(message.getFrom());
         builder.from(fromList.isEmpty() ? null : fromList.get(0));
         builder.to(getAddresses(message.getRecipients(Message.RecipientType.TO)));
@@ -212,47 +564,54 @@ public class MailReceiveService {
         builder.isRead(message.isSet(Flags.Flag.SEEN));
         builder.folder(folder);
 
-        // Extract body and attachments
-        Object content = message.getContent();
-        boolean isHtml = false;
-        if (content instanceof String) {
-            builder.body((String) content);
-            builder.isHtml(false);
-            builder.hasAttachments(false);
-        } else if (content instanceof MimeMultipart) {
-            MimeMultipart multipart = (MimeMultipart) content;
-            List<EmailAttachmentResponse> attachments = new ArrayList<>();
-            StringBuilder bodyText = new StringBuilder();
-            StringBuilder bodyHtml = new StringBuilder();
-
-            for (int i = 0; i < multipart.getCount(); i++) {
-                jakarta.mail.internet.MimeBodyPart part = (jakarta.mail.internet.MimeBodyPart) multipart.getBodyPart(i);
-                
-                if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
-                    EmailAttachmentResponse attachment = EmailAttachmentResponse.builder()
-                            .filename(part.getFileName())
-                            .contentType(part.getContentType())
-                            .size((long) part.getSize())
-                            .build();
-                    attachments.add(attachment);
-                } else {
-                    String contentType = part.getContentType();
-                    if (contentType != null && contentType.toLowerCase().contains("text/html")) {
-                        bodyHtml.append(part.getContent());
-                        isHtml = true;
-                    } else if (contentType != null && contentType.toLowerCase().contains("text/plain")) {
-                        bodyText.append(part.getContent());
-                    }
-                }
-            }
+        // Walk the whole MIME tree; only the chosen text part is downloaded, up to the body cap
+        MailMimeParser.ParsedContent content = mailMimeParser.parse(message);
+        builder.body(content.body());
+        builder.isHtml(content.html());
+        builder.bodyTruncated(content.truncated());
+        builder.preview(mailPreviewService.snippetFor(message, content.body(), content.html()));
+        builder.hasAttachments(!content.attachments().isEmpty());
+        builder.attachments(content.attachments());
+
+        return builder.build();
+    }
+
+    /**
+     * Receives streamed messages; may fail with an IOException when the client disconnects.
+     */
+    @FunctionalInterface
+    public interface MessageSink {
+        void accept(EmailMessageResponse message) throws IOException;
+    }
 
-            builder.body(isHtml ? bodyHtml.toString() : bodyText.toString());
-            builder.isHtml(isHtml);
-            builder.hasAttachments(!attachments.isEmpty());
-            builder.attachments(attachments);
+    private record PageRange(PageCursor cursor, Message[] messages, boolean hasOlder, boolean hasNewer) {
+    }
+
+    /**
+     * Position in a folder: UIDVALIDITY epoch, the last UID the client has seen and the
+     * direction to continue in. Encoded as an opaque URL-safe token.
+     */
+    record PageCursor(long uidValidity, long uid, boolean older) {
+
+        String encode() {
+            String value = uidValidity + ":" + uid + ":" + (older ? "older" : "newer");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
         }
 
-        return builder.build();
+        static PageCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                if (parts.length != 3 || !(parts[2].equals("older") || parts[2].equals("newer"))) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                return new PageCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2].equals("older"));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid cursor", e);
+            }
+        }
     }
 
     private List<String> getAddresses(Address[] addresses) {
@@ -7,13 +7,9 @@ import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import java.util.Properties;
-
 @Service
 public class MailReplyService {
 
@@ -22,11 +18,8 @@ public class MailReplyService {
     @Autowired
     private MailReceiveService mailReceiveService;
 
-    @Value("${mail.server.host:localhost}")
-    private String mailServerHost;
-
-    @Value("${mail.server.port:587}")
-    private Integer mailServerPort;
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
 
     @Value("${mail.server.username:}")
     private String mailServerUsername;
@@ -40,11 +33,10 @@ public class MailReplyService {
         try {
             // First, get the original message
             EmailMessageResponse originalMessage = mailReceiveService.getMessage(
-                    email, password, request.getMessageId(), "INBOX");
+                    email, password, request.getMessageId(), request.getUidValidity(), "INBOX");
 
             // Create reply message
-            JavaMailSender mailSender = getMailSender(email, password);
-            MimeMessage replyMessage = mailSender.createMimeMessage();
+            MimeMessage replyMessage = smtpTransportPool.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(replyMessage, true, "UTF-8");
 
             // Set reply headers
@@ -95,30 +87,15 @@ public class MailReplyService {
                 helper.setText(replyBody.toString(), false);
             }
 
-            // Send the reply
-            mailSender.send(replyMessage);
+            // Send the reply over a pooled, already authenticated connection
+            try (SmtpTransportPool.Lease lease = smtpTransportPool.borrow(email, password)) {
+                lease.send(replyMessage);
+            }
             logger.info("Reply sent successfully for message: {}", request.getMessageId());
         } catch (Exception e) {
             logger.error("Failed to send reply: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send reply: " + e.getMessage(), e);
         }
     }
-
-    private JavaMailSender getMailSender(String email, String password) {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost(mailServerHost);
-        mailSender.setPort(mailServerPort);
-        mailSender.setUsername(email);
-        mailSender.setPassword(password);
-
-        Properties props = mailSender.getJavaMailProperties();
-        props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.starttls.required", "true");
-        props.put("mail.debug", "false");
-
-        return mailSender;
-    }
 }
 
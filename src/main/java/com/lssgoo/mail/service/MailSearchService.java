@@ -0,0 +1,254 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.request.SearchEmailRequest;
+import com.lssgoo.mail.dtos.response.EmailSearchResponse;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.search.AndTerm;
+import jakarta.mail.search.BodyTerm;
+import jakarta.mail.search.ComparisonTerm;
+import jakarta.mail.search.FlagTerm;
+import jakarta.mail.search.FromStringTerm;
+import jakarta.mail.search.ReceivedDateTerm;
+import jakarta.mail.search.RecipientStringTerm;
+import jakarta.mail.search.SearchTerm;
+import jakarta.mail.search.SizeTerm;
+import jakarta.mail.search.SubjectTerm;
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.ProtocolException;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.eclipse.angus.mail.imap.protocol.SearchSequence;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Server-side search translated to IMAP {@code UID SEARCH}.
+ * <p>
+ * Structured criteria become a {@link SearchTerm} tree, the server returns the matching
+ * UIDs and only the envelopes of the requested page are fetched. Pages are addressed by
+ * a UID cursor, so results stay stable while new mail arrives.
+ */
+@Service
+public class MailSearchService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailSearchService.class);
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailReceiveService mailReceiveService;
+
+    @Autowired
+    private MailFullTextIndex mailFullTextIndex;
+
+    public EmailSearchResponse search(String email, String password, SearchEmailRequest request) {
+        String folderName = request.getFolder() != null ? request.getFolder() : "INBOX";
+        int limit = request.getLimit() != null ? request.getLimit() : 50;
+        logger.info("Searching folder {} for: {} (cursor: {}, limit: {})", folderName, email, request.getCursor(), limit);
+
+        try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+            IMAPFolder folder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_ONLY);
+            long uidValidity = folder.getUIDValidity();
+            SearchCursor cursor = SearchCursor.decode(request.getCursor());
+            if (cursor != null && cursor.uidValidity() != uidValidity) {
+                throw new RuntimeException("UIDVALIDITY changed for folder, search must be restarted");
+            }
+
+            long[] matches = searchUids(folder, buildTerm(request), cursor != null ? cursor.uid() : null);
+
+            // Newest first: take the highest UIDs below the cursor
+            int from = Math.max(0, matches.length - limit);
+            long[] page = Arrays.copyOfRange(matches, from, matches.length);
+
+            List<EmailSummaryResponse> summaries = new ArrayList<>();
+            if (page.length > 0) {
+                Message[] messages = folder.getMessagesByUID(page);
+                summaries = mailReceiveService.summarize(folder, compact(messages));
+            }
+
+            logger.info("Search matched {} messages, returning {} for: {}", matches.length, summaries.size(), email);
+            return EmailSearchResponse.builder()
+                    .messages(summaries)
+                    .totalMatches(matches.length)
+                    .nextCursor(from > 0 ? new SearchCursor(uidValidity, page[0]).encode() : null)
+                    .uidValidity(uidValidity)
+                    .folder(folderName)
+                    .build();
+        } catch (MessagingException e) {
+            logger.error("Failed to search messages: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to search messages: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Searches the local full-text index of messages this server has already parsed.
+     * Only the caller's credentials are checked against IMAP; the query itself runs in-process.
+     */
+    public EmailSearchResponse fullTextSearch(String email, String password, String query, String folder, int limit) {
+        logger.info("Full-text search in folder {} for: {} (limit: {})", folder, email, limit);
+        if (!hasText(query)) {
+            throw new RuntimeException("Search query must not be empty");
+        }
+
+        // Authenticate the caller before reading their index
+        imapConnectionPool.authenticate(email, password);
+
+        MailFullTextIndex.SearchResult result = mailFullTextIndex.search(email, folder, query, limit);
+        logger.info("Full-text search matched {} messages for: {}", result.totalHits(), email);
+        return EmailSearchResponse.builder()
+                .messages(result.hits())
+                .totalMatches((int) Math.min(result.totalHits(), Integer.MAX_VALUE))
+                .folder(folder)
+                .build();
+    }
+
+    /**
+     * Builds the search term for the given criteria, or null when no criterion is set.
+     */
+    public SearchTerm buildTerm(SearchEmailRequest request) {
+        List<SearchTerm> terms = new ArrayList<>();
+        if (hasText(request.getFrom())) {
+            terms.add(new FromStringTerm(request.getFrom()));
+        }
+        if (hasText(request.getTo())) {
+            terms.add(new RecipientStringTerm(Message.RecipientType.TO, request.getTo()));
+        }
+        if (hasText(request.getSubject())) {
+            terms.add(new SubjectTerm(request.getSubject()));
+        }
+        if (hasText(request.getText())) {
+            terms.add(new BodyTerm(request.getText()));
+        }
+        if (request.getSince() != null) {
+            terms.add(new ReceivedDateTerm(ComparisonTerm.GE, toDate(request.getSince())));
+        }
+        if (request.getBefore() != null) {
+            terms.add(new ReceivedDateTerm(ComparisonTerm.LT, toDate(request.getBefore())));
+        }
+        if (request.getUnseen() != null) {
+            terms.add(new FlagTerm(new Flags(Flags.Flag.SEEN), !request.getUnseen()));
+        }
+        if (request.getFlagged() != null) {
+            terms.add(new FlagTerm(new Flags(Flags.Flag.FLAGGED), request.getFlagged()));
+        }
+        if (request.getLarger() != null) {
+            terms.add(new SizeTerm(ComparisonTerm.GT, request.getLarger()));
+        }
+        if (request.getSmaller() != null) {
+            terms.add(new SizeTerm(ComparisonTerm.LT, request.getSmaller()));
+        }
+
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.size() == 1 ? terms.get(0) : new AndTerm(terms.toArray(new SearchTerm[0]));
+    }
+
+    /**
+     * Runs {@code UID SEARCH} on an open folder and returns the matching UIDs in
+     * ascending order. When {@code belowUid} is set only smaller UIDs are considered.
+     */
+    public long[] searchUids(IMAPFolder folder, SearchTerm term, Long belowUid) throws MessagingException {
+        if (belowUid != null && belowUid <= 1) {
+            return new long[0];
+        }
+        return (long[]) folder.doCommand(p -> {
+            Argument args = new Argument();
+            if (belowUid != null) {
+                args.writeAtom("UID");
+                args.writeAtom("1:" + (belowUid - 1));
+            }
+            if (term != null) {
+                try {
+                    args.append(new SearchSequence(p).generateSequence(term, "UTF-8"));
+                } catch (Exception e) {
+                    throw new ProtocolException("Unsupported search term: " + e.getMessage(), e);
+                }
+            } else {
+                args.writeAtom("ALL");
+            }
+
+            Response[] responses = p.command("UID SEARCH CHARSET UTF-8", args);
+            Response result = responses[responses.length - 1];
+            List<Long> uids = new ArrayList<>();
+            List<Response> unsolicited = new ArrayList<>();
+            for (int i = 0; i < responses.length - 1; i++) {
+                if (responses[i] instanceof IMAPResponse && ((IMAPResponse) responses[i]).keyEquals("SEARCH")) {
+                    IMAPResponse response = (IMAPResponse) responses[i];
+                    long uid;
+                    while ((uid = response.readLong()) != -1) {
+                        uids.add(uid);
+                    }
+                } else {
+                    unsolicited.add(responses[i]);
+                }
+            }
+            p.notifyResponseHandlers(unsolicited.toArray(new Response[0]));
+            p.handleResult(result);
+
+            long[] sorted = new long[uids.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = uids.get(i);
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        });
+    }
+
+    private Message[] compact(Message[] messages) {
+        return Arrays.stream(messages).filter(m -> m != null).toArray(Message[]::new);
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Position in a search: UIDVALIDITY epoch and the oldest UID already returned. Encoded
+     * as an opaque URL-safe token, so a cursor can never be replayed against a folder whose
+     * UIDs were reassigned.
+     */
+    record SearchCursor(long uidValidity, long uid) {
+
+        String encode() {
+            String value = uidValidity + ":" + uid;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                return new SearchCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid cursor", e);
+            }
+        }
+    }
+}
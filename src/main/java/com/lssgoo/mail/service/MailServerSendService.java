@@ -2,25 +2,20 @@ package com.lssgoo.mail.service;
 
 import com.lssgoo.mail.utils.LoggerUtil;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
 import jakarta.mail.internet.MimeMessage;
-import java.util.Properties;
 
 @Service
 public class MailServerSendService {
 
     private static final Logger logger = LoggerUtil.getLogger(MailServerSendService.class);
 
-    @Value("${mail.server.host:localhost}")
-    private String mailServerHost;
-
-    @Value("${mail.server.port:587}")
-    private Integer mailServerPort;
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
 
     @Value("${mail.server.username:}")
     private String mailServerUsername;
@@ -32,16 +27,14 @@ public class MailServerSendService {
     public void sendEmail(String fromEmail, String fromPassword, String to, String subject, String body, boolean isHtml) {
         logger.info("Sending email via internal mail server from: {} to: {}", fromEmail, to);
         
-        try {
-            JavaMailSender mailSender = getMailSender(fromEmail, fromPassword);
-            
-            MimeMessage message = mailSender.createMimeMessage();
+        try (SmtpTransportPool.Lease lease = smtpTransportPool.borrow(fromEmail, fromPassword)) {
+            MimeMessage message = smtpTransportPool.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
             helper.setFrom(fromEmail);
             helper.setTo(to);
             helper.setSubject(subject);
             helper.setText(body, isHtml);
-            mailSender.send(message);
+            lease.send(message);
             
             logger.info("Email sent successfully from: {} to: {}", fromEmail, to);
         } catch (Exception e) {
@@ -54,10 +47,8 @@ public class MailServerSendService {
                          String subject, String body, boolean isHtml) {
         logger.info("Sending email via internal mail server from: {} to: {}", fromEmail, to);
         
-        try {
-            JavaMailSender mailSender = getMailSender(fromEmail, fromPassword);
-            
-            MimeMessage message = mailSender.createMimeMessage();
+        try (SmtpTransportPool.Lease lease = smtpTransportPool.borrow(fromEmail, fromPassword)) {
+            MimeMessage message = smtpTransportPool.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
             helper.setFrom(fromEmail);
             helper.setTo(to);
@@ -72,7 +63,7 @@ public class MailServerSendService {
             
             helper.setSubject(subject);
             helper.setText(body, isHtml);
-            mailSender.send(message);
+            lease.send(message);
             
             logger.info("Email sent successfully from: {} to: {}", fromEmail, to);
         } catch (Exception e) {
@@ -80,22 +71,5 @@ public class MailServerSendService {
             throw new RuntimeException("Failed to send email: " + e.getMessage(), e);
         }
     }
-
-    private JavaMailSender getMailSender(String email, String password) {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost(mailServerHost);
-        mailSender.setPort(mailServerPort);
-        mailSender.setUsername(email);
-        mailSender.setPassword(password);
-
-        Properties props = mailSender.getJavaMailProperties();
-        props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.starttls.required", "true");
-        props.put("mail.debug", "false");
-
-        return mailSender;
-    }
 }
 
@@ -2,6 +2,7 @@ package com.lssgoo.mail.service;
 
 import com.lssgoo.mail.utils.LoggerUtil;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -19,14 +20,29 @@ public class MailServerUserService {
     @Value("${mail.server.scripts.path:./scripts}")
     private String scriptsPath;
 
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailMessageCache mailMessageCache;
+
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
     public void createMailbox(String email, String password) {
         logger.info("Creating mailbox for: {}", email);
         executeScript("add-user.sh", email, password);
+        // Connections pooled under a previous account of the same address must not outlive it
+        imapConnectionPool.evictMailbox(email);
+        smtpTransportPool.evictSender(email);
     }
 
     public void deleteMailbox(String email) {
         logger.info("Deleting mailbox for: {}", email);
         executeScript("delete-user.sh", email);
+        imapConnectionPool.evictMailbox(email);
+        smtpTransportPool.evictSender(email);
+        mailMessageCache.invalidateMailbox(email);
     }
 
     public String listUsers() {
@@ -0,0 +1,231 @@
+package com.lssgoo.mail.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lssgoo.mail.dtos.request.MergeRecipientRequest;
+import com.lssgoo.mail.dtos.request.MergeRequest;
+import com.lssgoo.mail.dtos.request.SendEmailRequest;
+import com.lssgoo.mail.dtos.request.TemplateRequest;
+import com.lssgoo.mail.dtos.response.BulkSendResponse;
+import com.lssgoo.mail.dtos.response.TemplateResponse;
+import com.lssgoo.mail.entity.MailTemplate;
+import com.lssgoo.mail.repository.MailTemplateRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.activation.DataHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registered mail-merge templates and their sending.
+ * <p>
+ * A template is parsed into a {@link CompiledTemplate} when it is registered and the
+ * compiled form is cached, so a merge only renders. Each recipient's body is rendered
+ * while the message is written to the SMTP connection, straight into the
+ * quoted-printable stream, so no rendered body is ever held as a string. A merge is sent
+ * as one bulk send over a single SMTP session.
+ */
+@Service
+public class MailTemplateService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailTemplateService.class);
+
+    @Autowired
+    private MailTemplateRepository mailTemplateRepository;
+
+    @Autowired
+    private MailBulkSendService mailBulkSendService;
+
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.server.templates.cache-size:1000}")
+    private long cacheSize;
+
+    private Cache<String, Compiled> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "mail.template.cache");
+    }
+
+    /**
+     * Creates or replaces a template of the mailbox. The template is compiled first, so a
+     * malformed one is rejected without replacing the stored version.
+     */
+    public TemplateResponse register(String email, String password, TemplateRequest request) {
+        imapConnectionPool.authenticate(email, password);
+        boolean html = Boolean.TRUE.equals(request.getIsHtml());
+        CompiledTemplate subject = CompiledTemplate.compile(request.getSubject(), false);
+        CompiledTemplate body = CompiledTemplate.compile(request.getBody(), html);
+
+        String owner = email.toLowerCase();
+        MailTemplate template = mailTemplateRepository.findByOwnerAndName(owner, request.getName())
+                .orElseGet(MailTemplate::new);
+        template.setOwner(owner);
+        template.setName(request.getName());
+        template.setSubject(request.getSubject());
+        template.setBody(request.getBody());
+        template.setIsHtml(html);
+        MailTemplate saved = mailTemplateRepository.save(template);
+
+        Compiled compiled = new Compiled(saved.getUpdatedAt(), subject, body);
+        cache.put(key(owner, saved.getName()), compiled);
+        logger.info("Registered template {} for {} ({} variables)", saved.getName(), email, variables(compiled).size());
+        return toResponse(saved, compiled);
+    }
+
+    public List<TemplateResponse> getTemplates(String email, String password) {
+        imapConnectionPool.authenticate(email, password);
+        List<TemplateResponse> templates = new ArrayList<>();
+        for (MailTemplate template : mailTemplateRepository.findByOwner(email.toLowerCase())) {
+            templates.add(toResponse(template, compiled(template)));
+        }
+        return templates;
+    }
+
+    /**
+     * Sends the template to every recipient, rendered with that recipient's variables.
+     * The credentials are checked before the lookup, so an unknown caller cannot probe
+     * which templates a mailbox has.
+     */
+    public BulkSendResponse merge(String email, String password, String name, MergeRequest request) {
+        imapConnectionPool.authenticate(email, password);
+        MailTemplate template = mailTemplateRepository.findByOwnerAndName(email.toLowerCase(), name)
+                .orElseThrow(() -> new RuntimeException("Template not found: " + name));
+        Compiled compiled = compiled(template);
+        String contentType = (compiled.body().isHtml() ? "text/html" : "text/plain") + "; charset=UTF-8";
+        List<MergeRecipientRequest> recipients = request.getRecipients();
+        logger.info("Merging template {} for {} recipients from: {}", name, recipients.size(), email);
+
+        return mailBulkSendService.send(email, password, new MailBulkSendService.MessageSource() {
+            @Override
+            public int size() {
+                return recipients.size();
+            }
+
+            @Override
+            public String recipient(int index) {
+                return recipients.get(index).getTo();
+            }
+
+            @Override
+            public MimeMessage build(int index) throws MessagingException {
+                MergeRecipientRequest recipient = recipients.get(index);
+                MimeMessage message = smtpTransportPool.createPartialMessage();
+                message.setFrom(new InternetAddress(email));
+                message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient.getTo(), true));
+                message.setSubject(compiled.subject().render(recipient.getVariables()), "UTF-8");
+                message.setDataHandler(new MergedBody(compiled.body(), recipient.getVariables(), contentType));
+                // Set explicitly: otherwise the body would be rendered once more just to pick an encoding
+                message.setHeader("Content-Transfer-Encoding", "quoted-printable");
+                return message;
+            }
+
+            @Override
+            public SendEmailRequest draft(int index) {
+                MergeRecipientRequest recipient = recipients.get(index);
+                return SendEmailRequest.builder()
+                        .to(recipient.getTo())
+                        .subject(compiled.subject().render(recipient.getVariables()))
+                        .body(compiled.body().render(recipient.getVariables()))
+                        .isHtml(compiled.body().isHtml())
+                        .build();
+            }
+        });
+    }
+
+    /**
+     * Returns the compiled form of a template, compiling it again only when it changed
+     * since it was cached, e.g. through another instance.
+     */
+    private Compiled compiled(MailTemplate template) {
+        String key = key(template.getOwner(), template.getName());
+        Compiled compiled = cache.getIfPresent(key);
+        if (compiled == null || !compiled.version().equals(template.getUpdatedAt())) {
+            compiled = new Compiled(template.getUpdatedAt(),
+                    CompiledTemplate.compile(template.getSubject(), false),
+                    CompiledTemplate.compile(template.getBody(), Boolean.TRUE.equals(template.getIsHtml())));
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    private String key(String owner, String name) {
+        return owner + "/" + name;
+    }
+
+    private List<String> variables(Compiled compiled) {
+        Set<String> variables = new LinkedHashSet<>(compiled.subject().getVariables());
+        variables.addAll(compiled.body().getVariables());
+        return new ArrayList<>(variables);
+    }
+
+    private TemplateResponse toResponse(MailTemplate template, Compiled compiled) {
+        return TemplateResponse.builder()
+                .name(template.getName())
+                .subject(template.getSubject())
+                .body(template.getBody())
+                .isHtml(template.getIsHtml())
+                .variables(variables(compiled))
+                .createdAt(template.getCreatedAt())
+                .updatedAt(template.getUpdatedAt())
+                .build();
+    }
+
+    private record Compiled(LocalDateTime version, CompiledTemplate subject, CompiledTemplate body) {
+    }
+
+    /**
+     * Message body that renders a template for one recipient when the message is written.
+     */
+    private static class MergedBody extends DataHandler {
+
+        private final CompiledTemplate template;
+        private final Map<String, String> variables;
+
+        private MergedBody(CompiledTemplate template, Map<String, String> variables, String contentType) {
+            super(template, contentType);
+            this.template = template;
+            this.variables = variables;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            template.render(variables, writer);
+            // Flush, not close: the caller still has to finish the transfer encoding
+            writer.flush();
+        }
+    }
+}
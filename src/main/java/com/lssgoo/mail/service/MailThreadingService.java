@@ -0,0 +1,142 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.entity.MailboxMessage;
+import com.lssgoo.mail.repository.MailboxMessageRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns conversation thread IDs to indexed messages from their Message-ID, References
+ * and In-Reply-To headers.
+ * <p>
+ * A message joins the thread of its nearest known ancestor, looked up through the
+ * (mailbox, Message-ID) index of {@code mailbox_messages}. Without a known ancestor the
+ * thread is named after the root of its References chain, so later ancestors and
+ * siblings converge on the same ID. When a parent arrives after its replies, the replies'
+ * provisional thread is merged into the parent's with one UPDATE. Work is proportional to
+ * the number of new messages, never to the mailbox size.
+ */
+@Service
+public class MailThreadingService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailThreadingService.class);
+
+    private static final Pattern MESSAGE_ID = Pattern.compile("<[^<>\\s]+>");
+
+    @Autowired
+    private MailboxMessageRepository mailboxMessageRepository;
+
+    @Value("${mail.server.index.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Threads and saves a batch of new rows of one mailbox.
+     */
+    public void threadAndSave(String mailbox, List<MailboxMessage> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<MailboxMessage> ordered = new ArrayList<>(rows);
+        ordered.sort(Comparator.comparing(MailboxMessage::getUid));
+
+        // One lookup resolves every ancestor referenced anywhere in the batch
+        Set<String> referenced = new HashSet<>();
+        Map<MailboxMessage, List<String>> ancestors = new IdentityHashMap<>();
+        for (MailboxMessage row : ordered) {
+            row.setMessageIdHeader(normalize(row.getMessageIdHeader()));
+            List<String> chain = parseIds(row.getReferencesHeader());
+            for (String parent : parseIds(row.getInReplyTo())) {
+                if (!chain.contains(parent)) {
+                    chain.add(parent);
+                }
+            }
+            ancestors.put(row, chain);
+            referenced.addAll(chain);
+        }
+        Map<String, String> known = new HashMap<>();
+        if (!referenced.isEmpty()) {
+            for (Object[] entry : mailboxMessageRepository.findThreadIds(mailbox, referenced)) {
+                known.put((String) entry[0], (String) entry[1]);
+            }
+        }
+
+        Map<String, String> merges = new LinkedHashMap<>();
+        for (MailboxMessage row : ordered) {
+            List<String> chain = ancestors.get(row);
+            String thread = null;
+            for (int i = chain.size() - 1; i >= 0 && thread == null; i--) {
+                thread = known.get(chain.get(i));
+            }
+            String own = row.getMessageIdHeader();
+            if (thread == null) {
+                thread = !chain.isEmpty() ? chain.get(0)
+                        : own != null ? own
+                        : "uid:" + row.getFolder() + "/" + row.getUidValidity() + "/" + row.getUid();
+            }
+            row.setThreadId(thread);
+            if (own != null) {
+                known.put(own, thread);
+                // Replies that arrived earlier may have started a thread named after this message
+                if (!own.equals(thread)) {
+                    merges.put(own, thread);
+                }
+            }
+        }
+
+        mailboxMessageRepository.saveAll(ordered);
+        for (Map.Entry<String, String> merge : merges.entrySet()) {
+            int merged = mailboxMessageRepository.mergeThread(mailbox, merge.getKey(), merge.getValue());
+            if (merged > 0) {
+                logger.debug("Merged {} messages of thread {} into {} for {}", merged, merge.getKey(), merge.getValue(), mailbox);
+            }
+        }
+    }
+
+    /**
+     * Threads rows indexed before thread IDs existed. Runs once per mailbox in batches.
+     */
+    public void backfill(String mailbox) {
+        List<MailboxMessage> rows;
+        int total = 0;
+        while (!(rows = mailboxMessageRepository.findUnthreaded(mailbox, PageRequest.of(0, batchSize))).isEmpty()) {
+            threadAndSave(mailbox, rows);
+            total += rows.size();
+        }
+        if (total > 0) {
+            logger.info("Backfilled thread IDs for {} messages of {}", total, mailbox);
+        }
+    }
+
+    private String normalize(String header) {
+        List<String> ids = parseIds(header);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private List<String> parseIds(String header) {
+        List<String> ids = new ArrayList<>();
+        if (header == null) {
+            return ids;
+        }
+        Matcher matcher = MESSAGE_ID.matcher(header);
+        while (matcher.find()) {
+            ids.add(matcher.group());
+        }
+        return ids;
+    }
+}
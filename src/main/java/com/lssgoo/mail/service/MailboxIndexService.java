@@ -0,0 +1,523 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.ConversationResponse;
+import com.lssgoo.mail.dtos.response.EmailSummaryResponse;
+import com.lssgoo.mail.entity.MailboxMessage;
+import com.lssgoo.mail.entity.MailboxState;
+import com.lssgoo.mail.repository.MailboxMessageRepository;
+import com.lssgoo.mail.repository.MailboxStateRepository;
+import com.lssgoo.mail.utils.LoggerUtil;
+import jakarta.mail.Address;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MailEvent;
+import jakarta.mail.event.MessageChangedEvent;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPMessage;
+import org.eclipse.angus.mail.imap.MessageVanishedEvent;
+import org.eclipse.angus.mail.imap.ResyncData;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local index of message envelopes and flags persisted in Postgres.
+ * <p>
+ * Each request first brings the index up to date with the server and then answers
+ * listing, counting and paging from the database. With QRESYNC the delta is read from
+ * the SELECT itself (VANISHED plus changed FLAGS since the stored HIGHESTMODSEQ) and
+ * only messages above the stored UIDNEXT are fetched. With CONDSTORE alone the changed
+ * flags are fetched with CHANGEDSINCE instead; servers with neither fall back to a
+ * flags-only reconciliation of the whole folder.
+ */
+@Service
+public class MailboxIndexService {
+
+    private static final Logger logger = LoggerUtil.getLogger(MailboxIndexService.class);
+
+    private static final FetchProfile FLAGS_PROFILE = new FetchProfile();
+    private static final FetchProfile ENVELOPE_PROFILE = new FetchProfile();
+
+    static {
+        FLAGS_PROFILE.add(FetchProfile.Item.FLAGS);
+        FLAGS_PROFILE.add(UIDFolder.FetchProfileItem.UID);
+
+        ENVELOPE_PROFILE.add(FetchProfile.Item.ENVELOPE);
+        ENVELOPE_PROFILE.add(FetchProfile.Item.FLAGS);
+        ENVELOPE_PROFILE.add(FetchProfile.Item.SIZE);
+        ENVELOPE_PROFILE.add(FetchProfile.Item.CONTENT_INFO);
+        ENVELOPE_PROFILE.add(UIDFolder.FetchProfileItem.UID);
+        ENVELOPE_PROFILE.add("Message-ID");
+        ENVELOPE_PROFILE.add("In-Reply-To");
+        ENVELOPE_PROFILE.add("References");
+    }
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailPreviewService mailPreviewService;
+
+    @Autowired
+    private MailboxStateRepository mailboxStateRepository;
+
+    @Autowired
+    private MailboxMessageRepository mailboxMessageRepository;
+
+    @Autowired
+    private MailThreadingService mailThreadingService;
+
+    @Autowired
+    private MailFullTextIndex mailFullTextIndex;
+
+    @Value("${mail.server.index.batch-size:500}")
+    private int batchSize;
+
+    private final Map<String, Object> syncLocks = new ConcurrentHashMap<>();
+
+    public List<EmailSummaryResponse> getMessages(String email, String password, String folder, int page, int size) {
+        String folderName = folder != null ? folder : "INBOX";
+        logger.info("Fetching indexed messages for: {} (folder: {}, page: {}, size: {})", email, folderName, page, size);
+
+        MailboxState state = sync(email, password, folderName);
+        List<MailboxMessage> rows = mailboxMessageRepository.findPage(state.getMailbox(), folderName, PageRequest.of(page, size));
+
+        List<EmailSummaryResponse> summaries = new ArrayList<>();
+        for (MailboxMessage row : rows) {
+            summaries.add(toSummary(row));
+        }
+        logger.info("Retrieved {} indexed messages for: {}", summaries.size(), email);
+        return summaries;
+    }
+
+    /**
+     * Pages through the conversations of a folder, most recently active first.
+     */
+    public List<ConversationResponse> getConversations(String email, String password, String folder, int page, int size) {
+        String folderName = folder != null ? folder : "INBOX";
+        logger.info("Fetching conversations for: {} (folder: {}, page: {}, size: {})", email, folderName, page, size);
+
+        MailboxState state = sync(email, password, folderName);
+        String mailbox = state.getMailbox();
+        mailThreadingService.backfill(mailbox);
+
+        List<Object[]> threads = mailboxMessageRepository.findConversations(mailbox, folderName, PageRequest.of(page, size));
+        Map<String, List<MailboxMessage>> messagesByThread = new HashMap<>();
+        if (!threads.isEmpty()) {
+            List<String> threadIds = new ArrayList<>();
+            for (Object[] thread : threads) {
+                threadIds.add((String) thread[0]);
+            }
+            for (MailboxMessage row : mailboxMessageRepository.findByThreadIds(mailbox, folderName, threadIds)) {
+                messagesByThread.computeIfAbsent(row.getThreadId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+
+        List<ConversationResponse> conversations = new ArrayList<>();
+        for (Object[] thread : threads) {
+            List<MailboxMessage> rows = messagesByThread.getOrDefault((String) thread[0], List.of());
+            MailboxMessage latest = rows.isEmpty() ? null : rows.get(0);
+            Set<String> participants = new LinkedHashSet<>();
+            List<Long> uids = new ArrayList<>();
+            for (MailboxMessage row : rows) {
+                if (row.getFromAddress() != null) {
+                    participants.add(row.getFromAddress());
+                }
+                uids.add(row.getUid());
+            }
+            conversations.add(ConversationResponse.builder()
+                    .threadId((String) thread[0])
+                    .subject(latest != null ? latest.getSubject() : null)
+                    .participants(new ArrayList<>(participants))
+                    .messageCount(((Number) thread[1]).longValue())
+                    .unreadCount(thread[2] != null ? ((Number) thread[2]).longValue() : 0L)
+                    .lastActivity(toDate((LocalDateTime) thread[3]))
+                    .latest(latest != null ? toSummary(latest) : null)
+                    .messageIds(uids)
+                    .build());
+        }
+        logger.info("Retrieved {} conversations for: {}", conversations.size(), email);
+        return conversations;
+    }
+
+    public Map<String, Object> getCounts(String email, String password, String folder) {
+        String folderName = folder != null ? folder : "INBOX";
+        MailboxState state = sync(email, password, folderName);
+
+        Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("folder", folderName);
+        counts.put("total", mailboxMessageRepository.countMessages(state.getMailbox(), folderName));
+        counts.put("unread", mailboxMessageRepository.countUnread(state.getMailbox(), folderName));
+        counts.put("uidValidity", state.getUidValidity());
+        counts.put("uidNext", state.getUidNext());
+        return counts;
+    }
+
+    /**
+     * Brings the index of one folder up to date. Borrowing the pooled lease also
+     * authenticates the caller before any indexed data is returned.
+     */
+    public MailboxState sync(String email, String password, String folderName) {
+        String mailbox = email.toLowerCase();
+        Object lock = syncLocks.computeIfAbsent(mailbox + "\0" + folderName, k -> new Object());
+
+        synchronized (lock) {
+            try (ImapConnectionPool.Lease lease = imapConnectionPool.borrow(email, password)) {
+                MailboxState state = mailboxStateRepository.findByMailboxAndFolder(mailbox, folderName).orElse(null);
+                boolean qresync = lease.hasCapability("QRESYNC");
+                boolean condstore = qresync || lease.hasCapability("CONDSTORE");
+
+                if (state != null && state.getHighestModSeq() != null && condstore) {
+                    List<MailEvent> events = lease.openFolder(folderName, Folder.READ_ONLY, qresync
+                            ? new ResyncData(state.getUidValidity(), state.getHighestModSeq()) : ResyncData.CONDSTORE);
+                    IMAPFolder imapFolder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_ONLY);
+                    if (imapFolder.getUIDValidity() == state.getUidValidity()) {
+                        if (qresync) {
+                            applyResyncEvents(mailbox, imapFolder, events);
+                        } else {
+                            applyChangedSince(mailbox, imapFolder, state.getUidNext(), state.getHighestModSeq());
+                        }
+                        fetchNewMessages(mailbox, imapFolder, state.getUidNext());
+                        reconcileExpunged(mailbox, imapFolder);
+                        return saveState(state, mailbox, imapFolder, condstore);
+                    }
+                    logger.info("UIDVALIDITY changed for {} {}, rebuilding index", mailbox, folderName);
+                } else if (condstore) {
+                    lease.openFolder(folderName, Folder.READ_ONLY, ResyncData.CONDSTORE);
+                }
+
+                IMAPFolder imapFolder = (IMAPFolder) lease.openFolder(folderName, Folder.READ_ONLY);
+                if (state != null && imapFolder.getUIDValidity() != state.getUidValidity()) {
+                    mailboxMessageRepository.deleteFolder(mailbox, folderName);
+                    mailFullTextIndex.deleteStale(mailbox, folderName, imapFolder.getUIDValidity());
+                }
+                fullSync(mailbox, imapFolder);
+                return saveState(state, mailbox, imapFolder, condstore);
+            } catch (MessagingException e) {
+                logger.error("Failed to sync mailbox index: {}", e.getMessage(), e);
+                throw new RuntimeException("Failed to sync mailbox index: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void applyResyncEvents(String mailbox, IMAPFolder folder, List<MailEvent> events) throws MessagingException {
+        Set<Long> vanished = new HashSet<>();
+        Map<Long, Message> changed = new HashMap<>();
+        if (events != null) {
+            for (MailEvent event : events) {
+                if (event instanceof MessageVanishedEvent) {
+                    for (long uid : ((MessageVanishedEvent) event).getUIDs()) {
+                        vanished.add(uid);
+                    }
+                } else if (event instanceof MessageChangedEvent) {
+                    Message message = ((MessageChangedEvent) event).getMessage();
+                    changed.put(folder.getUID(message), message);
+                }
+            }
+        }
+
+        if (!vanished.isEmpty()) {
+            removeMessages(mailbox, folder, vanished);
+        }
+        if (!changed.isEmpty()) {
+            updateFlags(mailbox, folder.getFullName(), changed);
+        }
+        logger.debug("Applied QRESYNC delta for {} {}: {} vanished, {} changed", mailbox, folder.getFullName(),
+                vanished.size(), changed.size());
+    }
+
+    /**
+     * CONDSTORE without QRESYNC: the SELECT reports nothing, so the messages whose flags
+     * changed are asked for with a single {@code UID FETCH 1:n (FLAGS) (CHANGEDSINCE m)}.
+     * Messages above the known UIDNEXT are left to {@link #fetchNewMessages}.
+     */
+    private void applyChangedSince(String mailbox, IMAPFolder folder, long knownUidNext, long modSeq)
+            throws MessagingException {
+        if (knownUidNext <= 1) {
+            return;
+        }
+        Map<Long, Message> changed = new HashMap<>();
+        for (Message message : folder.getMessagesByUIDChangedSince(1, knownUidNext - 1, modSeq)) {
+            changed.put(folder.getUID(message), message);
+        }
+        if (!changed.isEmpty()) {
+            updateFlags(mailbox, folder.getFullName(), changed);
+        }
+        logger.debug("Applied CONDSTORE delta for {} {}: {} changed", mailbox, folder.getFullName(), changed.size());
+    }
+
+    private void fetchNewMessages(String mailbox, IMAPFolder folder, long knownUidNext) throws MessagingException {
+        if (folder.getUIDNext() <= knownUidNext) {
+            return;
+        }
+        Message[] candidates = folder.getMessagesByUID(knownUidNext, UIDFolder.MAXUID);
+        List<Message> fresh = new ArrayList<>();
+        for (Message message : candidates) {
+            // "n:*" always matches the last message, even when its UID is below n
+            if (message != null && folder.getUID(message) >= knownUidNext) {
+                fresh.add(message);
+            }
+        }
+        insertMessages(mailbox, folder, fresh);
+    }
+
+    private void fullSync(String mailbox, IMAPFolder folder) throws MessagingException {
+        String folderName = folder.getFullName();
+        Message[] all = folder.getMessages();
+        if (all.length > 0) {
+            folder.fetch(all, FLAGS_PROFILE);
+        }
+
+        Map<Long, Message> server = new HashMap<>();
+        for (Message message : all) {
+            server.put(folder.getUID(message), message);
+        }
+        Set<Long> local = new HashSet<>(mailboxMessageRepository.findAllUids(mailbox, folderName));
+
+        Set<Long> removed = new HashSet<>(local);
+        removed.removeAll(server.keySet());
+        removeMessages(mailbox, folder, removed);
+
+        Map<Long, Message> existing = new HashMap<>();
+        List<Message> added = new ArrayList<>();
+        for (Map.Entry<Long, Message> entry : server.entrySet()) {
+            if (local.contains(entry.getKey())) {
+                existing.put(entry.getKey(), entry.getValue());
+            } else {
+                added.add(entry.getValue());
+            }
+        }
+        updateFlags(mailbox, folderName, existing);
+        insertMessages(mailbox, folder, added);
+        logger.info("Full index sync for {} {}: {} added, {} removed", mailbox, folderName, added.size(), removed.size());
+    }
+
+    private void reconcileExpunged(String mailbox, IMAPFolder folder) throws MessagingException {
+        // Expunges missed by the delta leave the local count above the server count
+        long localCount = mailboxMessageRepository.countMessages(mailbox, folder.getFullName());
+        if (localCount <= folder.getMessageCount()) {
+            return;
+        }
+        Message[] all = folder.getMessages();
+        if (all.length > 0) {
+            folder.fetch(all, FLAGS_PROFILE);
+        }
+        Set<Long> server = new HashSet<>();
+        for (Message message : all) {
+            server.add(folder.getUID(message));
+        }
+        Set<Long> removed = new HashSet<>(mailboxMessageRepository.findAllUids(mailbox, folder.getFullName()));
+        removed.removeAll(server);
+        removeMessages(mailbox, folder, removed);
+    }
+
+    /**
+     * Drops messages that are gone from the server, whether expunged or moved away, from
+     * the index tables and from the full-text index.
+     */
+    private void removeMessages(String mailbox, IMAPFolder folder, Collection<Long> uids) throws MessagingException {
+        if (uids.isEmpty()) {
+            return;
+        }
+        for (List<Long> chunk : chunk(uids)) {
+            mailboxMessageRepository.deleteByUids(mailbox, folder.getFullName(), chunk);
+        }
+        mailFullTextIndex.delete(mailbox, folder.getFullName(), folder.getUIDValidity(), uids);
+    }
+
+    private void updateFlags(String mailbox, String folderName, Map<Long, Message> messages) throws MessagingException {
+        for (List<Long> chunk : chunk(messages.keySet())) {
+            List<MailboxMessage> rows = mailboxMessageRepository.findByUids(mailbox, folderName, chunk);
+            List<MailboxMessage> dirty = new ArrayList<>();
+            for (MailboxMessage row : rows) {
+                Message message = messages.get(row.getUid());
+                if (applyFlags(row, message)) {
+                    dirty.add(row);
+                }
+            }
+            if (!dirty.isEmpty()) {
+                mailboxMessageRepository.saveAll(dirty);
+            }
+        }
+    }
+
+    private boolean applyFlags(MailboxMessage row, Message message) throws MessagingException {
+        Flags flags = message.getFlags();
+        boolean read = flags.contains(Flags.Flag.SEEN);
+        boolean flagged = flags.contains(Flags.Flag.FLAGGED);
+        boolean answered = flags.contains(Flags.Flag.ANSWERED);
+        if (row.getIsRead() == read && row.getIsFlagged() == flagged && row.getIsAnswered() == answered) {
+            return false;
+        }
+        row.setIsRead(read);
+        row.setIsFlagged(flagged);
+        row.setIsAnswered(answered);
+        if (message instanceof IMAPMessage) {
+            long modSeq = ((IMAPMessage) message).getModSeq();
+            if (modSeq > 0) {
+                row.setModSeq(modSeq);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the given messages, skipping UIDs already in the index. A sync that failed
+     * after inserting some batches but before saving its state leaves those rows behind,
+     * and the next sync fetches the same UIDs again from the old UIDNEXT.
+     */
+    private void insertMessages(String mailbox, IMAPFolder folder, List<Message> messages) throws MessagingException {
+        String folderName = folder.getFullName();
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<Message> candidates = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            Map<Long, Message> byUid = new LinkedHashMap<>();
+            for (Message message : candidates) {
+                byUid.put(folder.getUID(message), message);
+            }
+            byUid.keySet().removeAll(mailboxMessageRepository.findExistingUids(mailbox, folderName, byUid.keySet()));
+            if (byUid.isEmpty()) {
+                continue;
+            }
+            Message[] batch = byUid.values().toArray(new Message[0]);
+            folder.fetch(batch, ENVELOPE_PROFILE);
+            Map<Integer, String> previews = mailPreviewService.fetchPreviews(folder, batch);
+
+            List<MailboxMessage> rows = new ArrayList<>();
+            for (Message message : batch) {
+                MailboxMessage row = toEntity(mailbox, folder, message);
+                row.setSnippet(previews.get(message.getMessageNumber()));
+                rows.add(row);
+            }
+            mailThreadingService.threadAndSave(mailbox, rows);
+        }
+    }
+
+    private MailboxMessage toEntity(String mailbox, IMAPFolder folder, Message message) throws MessagingException {
+        MailboxMessage row = new MailboxMessage();
+        row.setMailbox(mailbox);
+        row.setFolder(folder.getFullName());
+        row.setUidValidity(folder.getUIDValidity());
+        row.setUid(folder.getUID(message));
+        row.setMessageIdHeader(firstHeader(message, "Message-ID"));
+        row.setInReplyTo(firstHeader(message, "In-Reply-To"));
+        row.setReferencesHeader(firstHeader(message, "References"));
+        row.setSubject(message.getSubject());
+        List<String> from = getAddresses(message.getFrom());
+        row.setFromAddress(from.isEmpty() ? null : from.get(0));
+        row.setToAddresses(String.join(",", getAddresses(message.getRecipients(Message.RecipientType.TO))));
+        row.setCcAddresses(String.join(",", getAddresses(message.getRecipients(Message.RecipientType.CC))));
+        row.setSentDate(toLocalDateTime(message.getSentDate()));
+        row.setReceivedDate(toLocalDateTime(message.getReceivedDate()));
+        row.setSize((long) message.getSize());
+        row.setHasAttachments(mailPreviewService.hasAttachments(message));
+        applyFlags(row, message);
+        return row;
+    }
+
+    private MailboxState saveState(MailboxState state, String mailbox, IMAPFolder folder, boolean condstore)
+            throws MessagingException {
+        if (state == null) {
+            state = new MailboxState();
+            state.setMailbox(mailbox);
+            state.setFolder(folder.getFullName());
+        }
+        state.setUidValidity(folder.getUIDValidity());
+        state.setUidNext(folder.getUIDNext());
+        state.setHighestModSeq(condstore ? folder.getHighestModSeq() : null);
+        state.setMessageCount(folder.getMessageCount());
+        state.setLastSyncedAt(LocalDateTime.now());
+        return mailboxStateRepository.save(state);
+    }
+
+    private EmailSummaryResponse toSummary(MailboxMessage row) {
+        return EmailSummaryResponse.builder()
+                .messageId(row.getUid())
+                .uidValidity(row.getUidValidity())
+                .from(row.getFromAddress())
+                .to(splitAddresses(row.getToAddresses()))
+                .cc(splitAddresses(row.getCcAddresses()))
+                .subject(row.getSubject())
+                .sentDate(toDate(row.getSentDate()))
+                .receivedDate(toDate(row.getReceivedDate()))
+                .isRead(row.getIsRead())
+                .isFlagged(row.getIsFlagged())
+                .size(row.getSize())
+                .hasAttachments(row.getHasAttachments())
+                .preview(row.getSnippet())
+                .folder(row.getFolder())
+                .build();
+    }
+
+    private String firstHeader(Message message, String name) throws MessagingException {
+        String[] values = message.getHeader(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    private List<String> getAddresses(Address[] addresses) {
+        List<String> result = new ArrayList<>();
+        if (addresses == null) {
+            return result;
+        }
+        for (Address address : addresses) {
+            if (address instanceof InternetAddress) {
+                result.add(((InternetAddress) address).getAddress());
+            } else {
+                result.add(address.toString());
+            }
+        }
+        return result;
+    }
+
+    private List<String> splitAddresses(String addresses) {
+        if (addresses == null || addresses.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(addresses.split(",")));
+    }
+
+    private List<List<Long>> chunk(Collection<Long> uids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> current = new ArrayList<>();
+        for (Long uid : uids) {
+            current.add(uid);
+            if (current.size() == batchSize) {
+                chunks.add(current);
+                current = new ArrayList<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private LocalDateTime toLocalDateTime(Date date) {
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+
+    private Date toDate(LocalDateTime dateTime) {
+        return dateTime != null ? Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+}
@@ -0,0 +1,456 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.utils.LoggerUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPMessage;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of connected, authenticated SMTP transports keyed by sender.
+ * <p>
+ * A transport pays TCP connect, EHLO, STARTTLS and AUTH once and then carries many
+ * messages, so a send from an active sender costs only MAIL FROM, RCPT TO and DATA.
+ * Transports idle for a while are checked with RSET before reuse, idle ones are kept
+ * alive with periodic RSETs until the idle timeout closes them, and any transport that
+ * failed during a send is closed instead of being returned.
+ */
+@Component
+public class SmtpTransportPool {
+
+    private static final Logger logger = LoggerUtil.getLogger(SmtpTransportPool.class);
+
+    @Value("${mail.server.host:localhost}")
+    private String smtpHost;
+
+    @Value("${mail.server.port:587}")
+    private Integer smtpPort;
+
+    @Value("${mail.server.smtp.timeout:30000}")
+    private int smtpTimeoutMs;
+
+    @Value("${mail.server.smtp.pool.max-per-sender:2}")
+    private int maxPerSender;
+
+    @Value("${mail.server.smtp.pool.max-total:32}")
+    private int maxTotal;
+
+    @Value("${mail.server.smtp.pool.borrow-timeout:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${mail.server.smtp.pool.idle-timeout:120000}")
+    private long idleTimeoutMs;
+
+    @Value("${mail.server.smtp.pool.validate-after-idle:10000}")
+    private long validateAfterIdleMs;
+
+    @Value("${mail.server.smtp.pool.keepalive-interval:60000}")
+    private long keepaliveIntervalMs;
+
+    @Value("${mail.server.smtp.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${mail.server.smtp.pool.eviction-interval:15000}")
+    private long evictionIntervalMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, SenderPool> pools = new ConcurrentHashMap<>();
+    private final AtomicInteger leased = new AtomicInteger();
+
+    private Semaphore openPermits;
+    private Session session;
+    private ScheduledExecutorService evictor;
+
+    @PostConstruct
+    public void init() {
+        Properties props = new Properties();
+        props.put("mail.transport.protocol", "smtp");
+        props.put("mail.smtp.host", smtpHost);
+        props.put("mail.smtp.port", smtpPort);
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.starttls.required", "true");
+        props.put("mail.smtp.connectiontimeout", smtpTimeoutMs);
+        props.put("mail.smtp.timeout", smtpTimeoutMs);
+        props.put("mail.smtp.writetimeout", smtpTimeoutMs);
+        // isConnected() probes with RSET, which also clears any half-finished transaction
+        props.put("mail.smtp.userset", "true");
+        props.put("mail.debug", "false");
+        session = Session.getInstance(props);
+        openPermits = new Semaphore(maxTotal);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "smtp-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictAndKeepAlive, evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("mail.smtp.pool.open", () -> maxTotal - openPermits.availablePermits()).register(meterRegistry);
+        Gauge.builder("mail.smtp.pool.leased", leased::get).register(meterRegistry);
+        Gauge.builder("mail.smtp.pool.idle", this::countIdle).register(meterRegistry);
+
+        logger.info("SMTP transport pool initialised (host: {}, max per sender: {}, max total: {})",
+                smtpHost, maxPerSender, maxTotal);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Shutting down SMTP transport pool");
+        evictor.shutdownNow();
+        for (SenderPool pool : pools.values()) {
+            PooledTransport pooled;
+            while ((pooled = pool.idle.pollFirst()) != null) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    /**
+     * Creates a message in the pool's session, ready to be sent through a lease.
+     */
+    public MimeMessage createMimeMessage() {
+        return new MimeMessage(session);
+    }
+
+    /**
+     * Creates a message that is still delivered to the accepted recipients when the server
+     * rejects some of them, for callers reporting results per recipient.
+     */
+    public MimeMessage createPartialMessage() {
+        SMTPMessage message = new SMTPMessage(session);
+        message.setSendPartial(true);
+        return message;
+    }
+
+    /**
+     * Borrows a connected transport for the given sender, connecting and authenticating a
+     * new one only when no healthy idle transport with the same credentials is available.
+     */
+    public Lease borrow(String email, String password) {
+        String key = email.toLowerCase();
+        String fingerprint = fingerprint(key, password);
+        SenderPool pool = pools.computeIfAbsent(key, k -> new SenderPool());
+
+        try {
+            if (!pool.permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Too many concurrent SMTP connections for sender: " + email);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for SMTP connection", e);
+        }
+
+        try {
+            PooledTransport pooled = takeIdle(pool, fingerprint);
+            if (pooled == null) {
+                pooled = connect(key, email, password, fingerprint);
+            }
+            leased.incrementAndGet();
+            return new Lease(pool, pooled);
+        } catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every idle transport of a sender, e.g. after its password was changed.
+     */
+    public void evictSender(String email) {
+        SenderPool pool = pools.get(email.toLowerCase());
+        if (pool == null) {
+            return;
+        }
+        PooledTransport pooled;
+        while ((pooled = pool.idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledTransport takeIdle(SenderPool pool, String fingerprint) {
+        for (PooledTransport pooled : pool.idle) {
+            // A transport authenticated with other credentials is never handed out, but stays
+            // pooled for its owner: a caller with a wrong password must not be able to flush it.
+            if (!pooled.fingerprint.equals(fingerprint) || !pool.idle.remove(pooled)) {
+                continue;
+            }
+            if (System.currentTimeMillis() - pooled.lastUsedAt < validateAfterIdleMs || pooled.transport.isConnected()) {
+                return pooled;
+            }
+            logger.debug("Discarding stale SMTP connection for: {}", pooled.sender);
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledTransport connect(String key, String email, String password, String fingerprint) {
+        reserveOpenPermit();
+        try {
+            Transport transport = session.getTransport("smtp");
+            transport.connect(smtpHost, smtpPort, email, password);
+            logger.debug("Opened new SMTP connection for: {}", email);
+            return new PooledTransport(key, fingerprint, transport);
+        } catch (MessagingException e) {
+            openPermits.release();
+            throw new RuntimeException("Failed to connect to SMTP server: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            openPermits.release();
+            throw e;
+        }
+    }
+
+    private void reserveOpenPermit() {
+        if (openPermits.tryAcquire()) {
+            return;
+        }
+        // At the global cap: make room by closing the least recently used idle transport.
+        if (evictOldestIdle() && openPermits.tryAcquire()) {
+            return;
+        }
+        try {
+            if (!openPermits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("SMTP connection pool exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for SMTP connection", e);
+        }
+    }
+
+    private boolean evictOldestIdle() {
+        SenderPool oldestPool = null;
+        PooledTransport oldest = null;
+        for (SenderPool pool : pools.values()) {
+            PooledTransport candidate = pool.idle.peekLast();
+            if (candidate != null && (oldest == null || candidate.lastUsedAt < oldest.lastUsedAt)) {
+                oldest = candidate;
+                oldestPool = pool;
+            }
+        }
+        if (oldest != null && oldestPool.idle.remove(oldest)) {
+            destroy(oldest);
+            return true;
+        }
+        return false;
+    }
+
+    private void release(SenderPool pool, PooledTransport pooled, boolean broken) {
+        leased.decrementAndGet();
+        try {
+            if (broken || pooled.messagesSent >= maxMessagesPerConnection) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                pooled.lastCheckedAt = pooled.lastUsedAt;
+                pool.idle.offerFirst(pooled);
+            }
+        } finally {
+            pool.permits.release();
+        }
+    }
+
+    private void destroy(PooledTransport pooled) {
+        if (pooled.closed) {
+            return;
+        }
+        pooled.closed = true;
+        try {
+            pooled.transport.close();
+        } catch (Exception e) {
+            logger.debug("Error closing SMTP transport: {}", e.getMessage());
+        } finally {
+            openPermits.release();
+        }
+    }
+
+    private void evictAndKeepAlive() {
+        try {
+            long now = System.currentTimeMillis();
+            for (SenderPool pool : pools.values()) {
+                List<PooledTransport> candidates = new ArrayList<>(pool.idle);
+                for (PooledTransport pooled : candidates) {
+                    boolean expired = now - pooled.lastUsedAt > idleTimeoutMs;
+                    boolean needsProbe = now - pooled.lastCheckedAt > keepaliveIntervalMs;
+                    if (!expired && !needsProbe) {
+                        continue;
+                    }
+                    // Take it out of the pool so no borrower uses it while it is probed
+                    if (!pool.idle.remove(pooled)) {
+                        continue;
+                    }
+                    if (expired) {
+                        logger.debug("Evicting idle SMTP connection for: {}", pooled.sender);
+                        destroy(pooled);
+                    } else if (pooled.transport.isConnected()) {
+                        pooled.lastCheckedAt = now;
+                        pool.idle.offerLast(pooled);
+                    } else {
+                        destroy(pooled);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("SMTP pool eviction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int countIdle() {
+        int idle = 0;
+        for (SenderPool pool : pools.values()) {
+            idle += pool.idle.size();
+        }
+        return idle;
+    }
+
+    private String fingerprint(String sender, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((sender + "\0" + password).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fingerprint SMTP credentials", e);
+        }
+    }
+
+    private class SenderPool {
+        private final Deque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+        private final Semaphore permits = new Semaphore(maxPerSender);
+    }
+
+    private static class PooledTransport {
+        private final String sender;
+        private final String fingerprint;
+        private final Transport transport;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private volatile long lastCheckedAt = lastUsedAt;
+        private int messagesSent;
+        private volatile boolean closed;
+
+        private PooledTransport(String sender, String fingerprint, Transport transport) {
+            this.sender = sender;
+            this.fingerprint = fingerprint;
+            this.transport = transport;
+        }
+    }
+
+    /**
+     * A borrowed SMTP connection. Closing the lease returns the transport to the pool.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final SenderPool pool;
+        private final PooledTransport pooled;
+        private boolean broken;
+        private boolean released;
+
+        private Lease(SenderPool pool, PooledTransport pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        public Transport getTransport() {
+            return pooled.transport;
+        }
+
+        /**
+         * Sends a message to all its recipients. A failed send leaves the SMTP session
+         * in an unknown state, so the transport is then closed on release.
+         */
+        public void send(MimeMessage message) throws MessagingException {
+            try {
+                message.saveChanges();
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+                pooled.messagesSent++;
+            } catch (MessagingException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Sends a message created by {@link #createPartialMessage()} to some of its recipients
+         * in one transaction, without regenerating its headers, so a message split across
+         * transactions keeps one Message-ID. Returns null when every recipient was accepted,
+         * or the exception listing the rejected ones when the message was delivered to the
+         * rest; the session is then still clean and stays pooled. Any other failure throws
+         * and closes the transport on release.
+         */
+        public SendFailedException sendPartial(MimeMessage message, Address[] recipients) throws MessagingException {
+            try {
+                pooled.transport.sendMessage(message, recipients);
+                pooled.messagesSent++;
+                return null;
+            } catch (SendFailedException e) {
+                if (e.getValidSentAddresses() != null && e.getValidSentAddresses().length > 0) {
+                    pooled.messagesSent++;
+                    return e;
+                }
+                broken = true;
+                throw e;
+            } catch (MessagingException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * True once the transport has carried as many messages as one connection may.
+         */
+        public boolean isExhausted() {
+            return pooled.messagesSent >= maxMessagesPerConnection;
+        }
+
+        /**
+         * True once a failed send has left the transport unusable.
+         */
+        public boolean isBroken() {
+            return broken;
+        }
+
+        /**
+         * Marks the connection as unusable so it is closed instead of being pooled.
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            release(pool, pooled, broken);
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.lssgoo.mail;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "mail.server.outbox.credential-key=test-outbox-credential-key")
 class MailServerBackendApplicationTests {
 
 	@Test
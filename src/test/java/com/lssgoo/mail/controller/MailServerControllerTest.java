@@ -0,0 +1,47 @@
+package com.lssgoo.mail.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailServerControllerTest {
+
+    private static final String ETAG = "\"1733306400-42-2\"";
+
+    @Test
+    void matchesIdenticalTag() {
+        assertThat(MailServerController.notModified(ETAG, ETAG)).isTrue();
+    }
+
+    @Test
+    void comparesWeakAndStrongTagsWeakly() {
+        assertThat(MailServerController.notModified("W/" + ETAG, ETAG)).isTrue();
+        assertThat(MailServerController.notModified(ETAG, "W/" + ETAG)).isTrue();
+        assertThat(MailServerController.notModified("W/" + ETAG, "W/" + ETAG)).isTrue();
+    }
+
+    @Test
+    void matchesAnyTagInList() {
+        assertThat(MailServerController.notModified("\"other\", " + ETAG + " ,\"third\"", ETAG)).isTrue();
+        assertThat(MailServerController.notModified("\"other\",W/" + ETAG, ETAG)).isTrue();
+    }
+
+    @Test
+    void wildcardMatchesAnyTag() {
+        assertThat(MailServerController.notModified("*", ETAG)).isTrue();
+    }
+
+    @Test
+    void doesNotMatchDifferentTags() {
+        assertThat(MailServerController.notModified("\"1733306400-42-3\"", ETAG)).isFalse();
+        assertThat(MailServerController.notModified("\"other\", W/\"another\"", ETAG)).isFalse();
+        // The quotes are part of the tag
+        assertThat(MailServerController.notModified("1733306400-42-2", ETAG)).isFalse();
+    }
+
+    @Test
+    void doesNotMatchWithoutHeaderOrTag() {
+        assertThat(MailServerController.notModified(null, ETAG)).isFalse();
+        assertThat(MailServerController.notModified(ETAG, null)).isFalse();
+    }
+}
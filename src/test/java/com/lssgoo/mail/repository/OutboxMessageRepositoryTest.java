@@ -0,0 +1,96 @@
+package com.lssgoo.mail.repository;
+
+import com.lssgoo.mail.entity.OutboxMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// claimDue is native PostgreSQL (FOR UPDATE SKIP LOCKED ... RETURNING), so this runs against the configured database
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class OutboxMessageRepositoryTest {
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Test
+    void claimsDueQueuedMessagesOldestFirst() {
+        OutboxMessage later = persist("QUEUED", now.minusMinutes(1));
+        OutboxMessage earlier = persist("QUEUED", now.minusMinutes(5));
+        persist("QUEUED", now.plusMinutes(5));
+        persist("SENT", now.minusMinutes(10));
+        entityManager.flush();
+
+        List<OutboxMessage> claimed = outboxMessageRepository.claimDue(now, 10);
+
+        assertThat(claimed).extracting(OutboxMessage::getQueueId)
+                .containsExactlyInAnyOrder(earlier.getQueueId(), later.getQueueId());
+        assertThat(claimed).allSatisfy(message -> {
+            assertThat(message.getStatus()).isEqualTo("SENDING");
+            assertThat(message.getAttempts()).isEqualTo(1);
+            assertThat(message.getLockedAt()).isEqualTo(now);
+        });
+    }
+
+    @Test
+    void honoursLimitByDueTime() {
+        OutboxMessage earliest = persist("QUEUED", now.minusMinutes(5));
+        persist("QUEUED", now.minusMinutes(1));
+        entityManager.flush();
+
+        List<OutboxMessage> claimed = outboxMessageRepository.claimDue(now, 1);
+
+        assertThat(claimed).extracting(OutboxMessage::getQueueId).containsExactly(earliest.getQueueId());
+    }
+
+    @Test
+    void neverClaimsTheSameMessageTwice() {
+        persist("QUEUED", now.minusMinutes(1));
+        entityManager.flush();
+
+        assertThat(outboxMessageRepository.claimDue(now, 10)).hasSize(1);
+        assertThat(outboxMessageRepository.claimDue(now, 10)).isEmpty();
+    }
+
+    @Test
+    void releaseReturnsClaimedMessagesToTheQueue() {
+        persist("QUEUED", now.minusMinutes(1));
+        entityManager.flush();
+        List<OutboxMessage> claimed = outboxMessageRepository.claimDue(now, 10);
+
+        int released = outboxMessageRepository.release(claimed.stream().map(OutboxMessage::getId).toList());
+        entityManager.clear();
+
+        assertThat(released).isEqualTo(1);
+        OutboxMessage message = entityManager.find(OutboxMessage.class, claimed.get(0).getId());
+        assertThat(message.getStatus()).isEqualTo("QUEUED");
+        assertThat(message.getAttempts()).isZero();
+        assertThat(outboxMessageRepository.claimDue(now, 10)).hasSize(1);
+    }
+
+    private OutboxMessage persist(String status, LocalDateTime nextAttemptAt) {
+        OutboxMessage message = new OutboxMessage();
+        message.setQueueId(UUID.randomUUID().toString());
+        message.setSender("alice@lssgoo.com");
+        message.setToAddress("bob@example.com");
+        message.setSubject("Hello");
+        message.setBody("Hi Bob");
+        message.setStatus(status);
+        message.setNextAttemptAt(nextAttemptAt);
+        return entityManager.persist(message);
+    }
+}
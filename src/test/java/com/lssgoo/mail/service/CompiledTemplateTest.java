@@ -0,0 +1,98 @@
+package com.lssgoo.mail.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledTemplateTest {
+
+    @Test
+    void rendersVariablesBetweenLiterals() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{name}}, your order {{ order.id }} shipped.", false);
+
+        assertThat(template.render(Map.of("name", "Alice", "order.id", "42")))
+                .isEqualTo("Hi Alice, your order 42 shipped.");
+    }
+
+    @Test
+    void rendersMissingVariablesAsEmptyText() {
+        CompiledTemplate template = CompiledTemplate.compile("[{{a}}|{{b}}]", false);
+
+        assertThat(template.render(Map.of("a", "x"))).isEqualTo("[x|]");
+        assertThat(template.render(null)).isEqualTo("[|]");
+    }
+
+    @Test
+    void rendersTemplateWithoutVariablesAsIs() {
+        assertThat(CompiledTemplate.compile("plain text", false).render(Map.of())).isEqualTo("plain text");
+        assertThat(CompiledTemplate.compile("", false).render(Map.of())).isEmpty();
+    }
+
+    @Test
+    void escapesVariablesInHtmlTemplates() {
+        CompiledTemplate template = CompiledTemplate.compile("<p>{{v}}</p>", true);
+
+        assertThat(template.render(Map.of("v", "<b>Tom & \"Jerry\"'s</b>")))
+                .isEqualTo("<p>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&#39;s&lt;/b&gt;</p>");
+    }
+
+    @Test
+    void insertsTripleBracedVariablesUnescaped() {
+        CompiledTemplate template = CompiledTemplate.compile("<div>{{{html}}}</div>", true);
+
+        assertThat(template.render(Map.of("html", "<b>bold</b>"))).isEqualTo("<div><b>bold</b></div>");
+    }
+
+    @Test
+    void doesNotEscapeVariablesInTextTemplates() {
+        CompiledTemplate template = CompiledTemplate.compile("{{v}}", false);
+
+        assertThat(template.render(Map.of("v", "<a&b>"))).isEqualTo("<a&b>");
+    }
+
+    @Test
+    void rendersIntoAnAppendable() throws Exception {
+        CompiledTemplate template = CompiledTemplate.compile("Dear {{name}}", false);
+        StringWriter out = new StringWriter();
+
+        template.render(Map.of("name", "Bob"), out);
+
+        assertThat(out).hasToString("Dear Bob");
+    }
+
+    @Test
+    void listsDistinctVariablesInOrderOfFirstUse() {
+        CompiledTemplate template = CompiledTemplate.compile("{{b}} {{a}} {{{b}}} {{c}}", true);
+
+        assertThat(template.getVariables()).containsExactly("b", "a", "c");
+        assertThat(template.isHtml()).isTrue();
+    }
+
+    @Test
+    void rejectsUnclosedVariable() {
+        assertThatThrownBy(() -> CompiledTemplate.compile("Hello {{name", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unclosed template variable at offset 6");
+    }
+
+    @Test
+    void rejectsUnclosedTripleBracedVariable() {
+        assertThatThrownBy(() -> CompiledTemplate.compile("{{{raw}}", true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unclosed template variable at offset 0");
+    }
+
+    @Test
+    void rejectsInvalidVariableNames() {
+        assertThatThrownBy(() -> CompiledTemplate.compile("x {{first name}}", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid template variable 'first name' at offset 2");
+        assertThatThrownBy(() -> CompiledTemplate.compile("{{ }}", false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid template variable ''");
+    }
+}
@@ -0,0 +1,91 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.BulkRecipientResult;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MailBulkSendServiceTest {
+
+    private final MailBulkSendService service = new MailBulkSendService();
+
+    @Test
+    void acceptsEveryRecipientWithoutFailure() throws Exception {
+        List<BulkRecipientResult> results = new ArrayList<>();
+
+        service.record(0, List.of(address("bob@example.com"), address("carol@example.com")), null, results);
+
+        assertThat(results).extracting(BulkRecipientResult::getMessage, BulkRecipientResult::getRecipient, BulkRecipientResult::getStatus)
+                .containsExactly(
+                        tuple(0, "bob@example.com", MailBulkSendService.STATUS_ACCEPTED),
+                        tuple(0, "carol@example.com", MailBulkSendService.STATUS_ACCEPTED));
+    }
+
+    @Test
+    void classifiesEachRecipientOfPartialFailure() throws Exception {
+        InternetAddress bob = address("bob@example.com");
+        InternetAddress carol = address("carol@example.com");
+        InternetAddress dave = address("dave@example.com");
+        InternetAddress erin = address("erin@example.com");
+
+        // Shaped like the exception SMTPTransport throws: one chained rejection per failed RCPT
+        SMTPAddressFailedException carolRejected = new SMTPAddressFailedException(
+                address("CAROL@example.com"), "RCPT TO:<carol@example.com>", 550, "550 5.1.1 User unknown\r\n");
+        SMTPAddressFailedException daveRejected = new SMTPAddressFailedException(
+                dave, "RCPT TO:<dave@example.com>", 452, "452 4.2.2 Mailbox full");
+        carolRejected.setNextException(daveRejected);
+        SendFailedException failure = new SendFailedException("Invalid Addresses", carolRejected,
+                new Address[]{bob}, new Address[]{erin}, new Address[]{carol, dave});
+
+        List<BulkRecipientResult> results = new ArrayList<>();
+        service.record(2, List.of(bob, carol, dave, erin), failure, results);
+
+        assertThat(results).extracting(BulkRecipientResult::getRecipient, BulkRecipientResult::getStatus,
+                        BulkRecipientResult::getCode, BulkRecipientResult::getError)
+                .containsExactly(
+                        tuple("bob@example.com", MailBulkSendService.STATUS_ACCEPTED, null, null),
+                        tuple("carol@example.com", MailBulkSendService.STATUS_REJECTED, 550, "550 5.1.1 User unknown"),
+                        tuple("dave@example.com", MailBulkSendService.STATUS_REJECTED, 452, "452 4.2.2 Mailbox full"),
+                        tuple("erin@example.com", MailBulkSendService.STATUS_FAILED, null, "Invalid Addresses"));
+        assertThat(results).extracting(BulkRecipientResult::getMessage).containsOnly(2);
+    }
+
+    @Test
+    void fallsBackToFailureMessageWithoutChainedReply() throws Exception {
+        InternetAddress bob = address("bob@example.com");
+        SendFailedException failure = new SendFailedException("Invalid Addresses", null,
+                null, null, new Address[]{bob});
+
+        List<BulkRecipientResult> results = new ArrayList<>();
+        service.record(0, List.of(bob), failure, results);
+
+        assertThat(results).singleElement().satisfies(result -> {
+            assertThat(result.getStatus()).isEqualTo(MailBulkSendService.STATUS_REJECTED);
+            assertThat(result.getCode()).isNull();
+            assertThat(result.getError()).isEqualTo("Invalid Addresses");
+        });
+    }
+
+    @Test
+    void failsWholeChunkWhenTransactionAborted() throws Exception {
+        SendFailedException failure = new SendFailedException("Connection reset");
+
+        List<BulkRecipientResult> results = new ArrayList<>();
+        service.record(1, List.of(address("bob@example.com"), address("carol@example.com")), failure, results);
+
+        assertThat(results).extracting(BulkRecipientResult::getStatus, BulkRecipientResult::getError)
+                .containsOnly(tuple(MailBulkSendService.STATUS_FAILED, "Connection reset"));
+    }
+
+    private InternetAddress address(String address) throws Exception {
+        return new InternetAddress(address);
+    }
+}
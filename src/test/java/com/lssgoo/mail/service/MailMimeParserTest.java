@@ -0,0 +1,191 @@
+package com.lssgoo.mail.service;
+
+import com.lssgoo.mail.dtos.response.EmailAttachmentResponse;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailMimeParserTest {
+
+    private MailMimeParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new MailMimeParser();
+        ReflectionTestUtils.setField(parser, "maxBodyBytes", 1024);
+    }
+
+    @Test
+    void parsesSinglePartMessageAsPartOne() throws Exception {
+        MimeMessage message = message("""
+                Content-Type: text/plain; charset=UTF-8
+
+                Hello there
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("Hello there\r\n");
+        assertThat(content.html()).isFalse();
+        assertThat(content.truncated()).isFalse();
+        assertThat(content.attachments()).isEmpty();
+    }
+
+    @Test
+    void prefersHtmlAlternativeAndNumbersNestedSections() throws Exception {
+        MimeMessage message = message("""
+                Content-Type: multipart/mixed; boundary="outer"
+
+                --outer
+                Content-Type: multipart/alternative; boundary="inner"
+
+                --inner
+                Content-Type: text/plain; charset=UTF-8
+
+                plain body
+                --inner
+                Content-Type: text/html; charset=UTF-8
+
+                <p>html body</p>
+                --inner--
+                --outer
+                Content-Type: application/pdf; name="report.pdf"
+                Content-Disposition: attachment; filename="report.pdf"
+                Content-Transfer-Encoding: base64
+
+                JVBERi0xLjQK
+                --outer--
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("<p>html body</p>");
+        assertThat(content.html()).isTrue();
+        assertThat(content.attachments()).hasSize(1);
+        EmailAttachmentResponse attachment = content.attachments().get(0);
+        assertThat(attachment.getPartId()).isEqualTo("2");
+        assertThat(attachment.getFilename()).isEqualTo("report.pdf");
+        assertThat(attachment.getContentType()).isEqualTo("application/pdf");
+    }
+
+    @Test
+    void walksDeeplyNestedPartsAndKeepsInlineImagesAsReferences() throws Exception {
+        MimeMessage message = message("""
+                Content-Type: multipart/mixed; boundary="a"
+
+                --a
+                Content-Type: multipart/related; boundary="b"
+
+                --b
+                Content-Type: multipart/alternative; boundary="c"
+
+                --c
+                Content-Type: text/plain
+
+                nested text
+                --c--
+                --b
+                Content-Type: image/png
+                Content-ID: <logo@example.com>
+                Content-Disposition: inline; filename="logo.png"
+
+                png
+                --b--
+                --a
+                Content-Type: text/plain
+                Content-Disposition: attachment; filename="notes.txt"
+
+                attached text
+                --a--
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("nested text");
+        assertThat(content.html()).isFalse();
+        assertThat(content.attachments())
+                .extracting(EmailAttachmentResponse::getPartId)
+                .containsExactly("1.2", "2");
+        assertThat(content.attachments().get(0).getContentId()).isEqualTo("<logo@example.com>");
+        assertThat(content.attachments().get(1).getFilename()).isEqualTo("notes.txt");
+    }
+
+    @Test
+    void treatsSecondTextPartAsAttachment() throws Exception {
+        MimeMessage message = message("""
+                Content-Type: multipart/mixed; boundary="x"
+
+                --x
+                Content-Type: text/plain
+
+                first
+                --x
+                Content-Type: text/plain
+
+                second
+                --x--
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("first");
+        assertThat(content.attachments()).extracting(EmailAttachmentResponse::getPartId).containsExactly("2");
+    }
+
+    @Test
+    void decodesTransferEncodingAndCharset() throws Exception {
+        MimeMessage message = message("""
+                Content-Type: text/plain; charset=ISO-8859-1
+                Content-Transfer-Encoding: quoted-printable
+
+                Gr=FC=DFe
+                """);
+
+        assertThat(parser.parse(message).body()).isEqualTo("Grüße\r\n");
+    }
+
+    @Test
+    void cutsBodiesAtTheConfiguredLimit() throws Exception {
+        ReflectionTestUtils.setField(parser, "maxBodyBytes", 10);
+        MimeMessage message = message("""
+                Content-Type: text/plain; charset=US-ASCII
+
+                0123456789abcdef
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("0123456789");
+        assertThat(content.truncated()).isTrue();
+    }
+
+    @Test
+    void bodyExactlyAtTheLimitIsNotTruncated() throws Exception {
+        ReflectionTestUtils.setField(parser, "maxBodyBytes", 12);
+        MimeMessage message = message("""
+                Content-Type: text/plain; charset=US-ASCII
+
+                0123456789
+                """);
+
+        MailMimeParser.ParsedContent content = parser.parse(message);
+
+        assertThat(content.body()).isEqualTo("0123456789\r\n");
+        assertThat(content.truncated()).isFalse();
+    }
+
+    private MimeMessage message(String source) throws Exception {
+        String raw = "From: a@example.com\r\nTo: b@example.com\r\nSubject: test\r\nMIME-Version: 1.0\r\n"
+                + source.replace("\n", "\r\n");
+        return new MimeMessage(Session.getInstance(new Properties()),
+                new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)));
+    }
+}
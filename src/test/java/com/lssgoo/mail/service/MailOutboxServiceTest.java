@@ -0,0 +1,76 @@
+package com.lssgoo.mail.service;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailOutboxServiceTest {
+
+    @Test
+    void rejectedCredentialsArePermanent() {
+        assertThat(MailOutboxService.isPermanent(new AuthenticationFailedException("535 5.7.8 Authentication failed"))).isTrue();
+    }
+
+    @Test
+    void permanentRecipientRejectionIsPermanent() throws Exception {
+        assertThat(MailOutboxService.isPermanent(addressFailed(550))).isTrue();
+    }
+
+    @Test
+    void temporaryRecipientRejectionIsRetried() throws Exception {
+        assertThat(MailOutboxService.isPermanent(addressFailed(451))).isFalse();
+    }
+
+    @Test
+    void permanentSendFailureIsPermanent() {
+        assertThat(MailOutboxService.isPermanent(sendFailed(554))).isTrue();
+    }
+
+    @Test
+    void temporarySendFailureIsRetried() {
+        assertThat(MailOutboxService.isPermanent(sendFailed(421))).isFalse();
+    }
+
+    @Test
+    void findsPermanentFailureBehindNextException() throws Exception {
+        // Transport.send reports recipient rejections as the next exceptions of a SendFailedException
+        SendFailedException failed = new SendFailedException("Invalid Addresses", addressFailed(550));
+
+        assertThat(MailOutboxService.isPermanent(failed)).isTrue();
+    }
+
+    @Test
+    void findsPermanentFailureBehindWrappingRuntimeException() {
+        RuntimeException wrapped = new RuntimeException("Failed to send email: 535",
+                new AuthenticationFailedException("535 5.7.8 Authentication failed"));
+
+        assertThat(MailOutboxService.isPermanent(wrapped)).isTrue();
+    }
+
+    @Test
+    void connectionFailuresAreRetried() {
+        MessagingException timeout = new MessagingException("Could not connect to SMTP host", new SocketTimeoutException("connect timed out"));
+
+        assertThat(MailOutboxService.isPermanent(timeout)).isFalse();
+        assertThat(MailOutboxService.isPermanent(new RuntimeException("SMTP connection pool exhausted"))).isFalse();
+    }
+
+    private SMTPAddressFailedException addressFailed(int code) throws Exception {
+        return new SMTPAddressFailedException(new InternetAddress("nobody@example.com"), "RCPT TO:<nobody@example.com>",
+                code, code + " mailbox unavailable");
+    }
+
+    private SMTPSendFailedException sendFailed(int code) {
+        return new SMTPSendFailedException("DATA", code, code + " transaction failed", null,
+                new Address[0], new Address[0], new Address[0]);
+    }
+}
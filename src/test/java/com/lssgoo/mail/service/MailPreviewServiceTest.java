@@ -0,0 +1,68 @@
+package com.lssgoo.mail.service;
+
+import jakarta.mail.internet.MimeUtility;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailPreviewServiceTest {
+
+    @Test
+    void cutsBase64BackToWholeQuantum() {
+        byte[] raw = "SGVsbG8gd29y".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(MailPreviewService.completeLength(raw, 0, 10, "base64")).isEqualTo(8);
+        assertThat(MailPreviewService.completeLength(raw, 0, 12, "base64")).isEqualTo(12);
+    }
+
+    @Test
+    void ignoresLineBreaksWhenCountingBase64Quanta() throws Exception {
+        String text = "The quick brown fox jumps over the lazy dog, again and again and again.";
+        String encoded = Base64.getMimeEncoder(76, "\r\n".getBytes(StandardCharsets.US_ASCII))
+                .encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        byte[] raw = encoded.getBytes(StandardCharsets.US_ASCII);
+
+        // A window ending two characters into the second line leaves half a quantum
+        int window = 76 + 2 + 2;
+        int length = MailPreviewService.completeLength(raw, 0, window, "base64");
+
+        assertThat(length).isEqualTo(76);
+        assertThat(decode(raw, length, "base64")).isEqualTo(text.substring(0, 57));
+    }
+
+    @Test
+    void honoursArrayOffset() {
+        byte[] raw = "* 1 FETCH {10}\r\nSGVsbG8gd2".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(MailPreviewService.completeLength(raw, 16, 10, "BASE64")).isEqualTo(8);
+    }
+
+    @Test
+    void dropsTrailingPartialQuotedPrintableEscape() {
+        byte[] raw = "caf=C3=A9 cr=C3=".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(MailPreviewService.completeLength(raw, 0, raw.length, "quoted-printable")).isEqualTo(raw.length - 1);
+        assertThat(MailPreviewService.completeLength(raw, 0, raw.length - 1, "quoted-printable")).isEqualTo(raw.length - 1);
+        assertThat(MailPreviewService.completeLength(raw, 0, raw.length - 2, "quoted-printable")).isEqualTo(raw.length - 4);
+        assertThat(MailPreviewService.completeLength(raw, 0, 9, "quoted-printable")).isEqualTo(9);
+    }
+
+    @Test
+    void leavesOtherEncodingsAlone() {
+        byte[] raw = "plain text=".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(MailPreviewService.completeLength(raw, 0, raw.length, "7bit")).isEqualTo(raw.length);
+        assertThat(MailPreviewService.completeLength(raw, 0, raw.length, "8bit")).isEqualTo(raw.length);
+    }
+
+    private String decode(byte[] raw, int length, String encoding) throws Exception {
+        try (InputStream decoded = MimeUtility.decode(new ByteArrayInputStream(raw, 0, length), encoding)) {
+            return new String(decoded.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
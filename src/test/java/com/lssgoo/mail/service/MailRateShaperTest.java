@@ -0,0 +1,136 @@
+package com.lssgoo.mail.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MailRateShaperTest {
+
+    private static final long START = 1_000_000_000L;
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private MeterRegistry meterRegistry;
+    private MailRateShaper shaper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        shaper = new MailRateShaper();
+        ReflectionTestUtils.setField(shaper, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(shaper, "enabled", true);
+        // Slow refill, so no token comes back while a test runs
+        ReflectionTestUtils.setField(shaper, "senderRate", 1.0);
+        ReflectionTestUtils.setField(shaper, "senderBurst", 3);
+        // No organisation bucket, so the user repository is never consulted
+        ReflectionTestUtils.setField(shaper, "organisationRate", 0.0);
+        ReflectionTestUtils.setField(shaper, "organisationBurst", 0);
+        ReflectionTestUtils.setField(shaper, "domainRate", 1.0);
+        ReflectionTestUtils.setField(shaper, "domainBurst", 2);
+        shaper.init();
+    }
+
+    @Test
+    void bucketStartsFullAndAdmitsItsBurst() {
+        MailRateShaper.Bucket bucket = new MailRateShaper.Bucket("sender", "a@example.com", 10, 3, START);
+
+        assertThat(bucket.level(START)).isCloseTo(3.0, within(1e-9));
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.tryAcquire(START)).isZero();
+        assertThat(bucket.level(START)).isCloseTo(0.0, within(1e-9));
+    }
+
+    @Test
+    void emptyBucketReportsTimeUntilNextToken() {
+        MailRateShaper.Bucket bucket = new MailRateShaper.Bucket("sender", "a@example.com", 10, 2, START);
+        bucket.tryAcquire(START);
+        bucket.tryAcquire(START);
+
+        assertThat(bucket.tryAcquire(START)).isEqualTo(INTERVAL);
+        assertThat(bucket.tryAcquire(START + INTERVAL / 4)).isEqualTo(INTERVAL * 3 / 4);
+        // A refused request takes nothing, so the wait does not grow
+        assertThat(bucket.tryAcquire(START)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void bucketRefillsAtItsRate() {
+        MailRateShaper.Bucket bucket = new MailRateShaper.Bucket("sender", "a@example.com", 10, 2, START);
+        bucket.tryAcquire(START);
+        bucket.tryAcquire(START);
+
+        assertThat(bucket.tryAcquire(START + INTERVAL)).isZero();
+        assertThat(bucket.tryAcquire(START + INTERVAL)).isPositive();
+        assertThat(bucket.level(START + 10 * INTERVAL)).isCloseTo(2.0, within(1e-9));
+    }
+
+    @Test
+    void idleBucketNeverExceedsItsBurst() {
+        MailRateShaper.Bucket bucket = new MailRateShaper.Bucket("sender", "a@example.com", 10, 2, START);
+        long later = START + TimeUnit.SECONDS.toNanos(60);
+
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    void refundReturnsOneToken() {
+        MailRateShaper.Bucket bucket = new MailRateShaper.Bucket("sender", "a@example.com", 10, 1, START);
+        bucket.tryAcquire(START);
+        assertThat(bucket.tryAcquire(START)).isPositive();
+
+        bucket.refund();
+
+        assertThat(bucket.tryAcquire(START)).isZero();
+    }
+
+    @Test
+    void tryAcquireIsAllOrNothingAcrossBuckets() {
+        // The example.org domain bucket (burst 2) runs out before the sender bucket (burst 3)
+        assertThat(shaper.tryAcquire("a@example.com", List.of("x@example.org"))).isZero();
+        assertThat(shaper.tryAcquire("a@example.com", List.of("y@example.org"))).isZero();
+        assertThat(shaper.tryAcquire("a@example.com", List.of("z@Example.org"))).isPositive();
+
+        // The refused message did not consume the sender's third token
+        assertThat(shaper.tryAcquire("A@example.com", List.of("x@example.net"))).isZero();
+        assertThat(shaper.tryAcquire("a@example.com", List.of("y@example.net"))).isPositive();
+    }
+
+    @Test
+    void deferralsAreCountedPerScope() {
+        shaper.tryAcquire("a@example.com", List.of("x@example.org"));
+        shaper.tryAcquire("a@example.com", List.of("x@example.org"));
+        shaper.tryAcquire("a@example.com", List.of("x@example.org"));
+
+        assertThat(meterRegistry.get("mail.shaping.deferred").tag("scope", "domain").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void gaugesAreTaggedByScopeOnly() {
+        shaper.tryAcquire("a@example.com", List.of("x@example.org", "y@example.net"));
+
+        assertThat(meterRegistry.get("mail.shaping.buckets").tag("scope", "domain").gauge().value()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("mail.shaping.buckets").tag("scope", "sender").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("mail.shaping.tokens.min").tag("scope", "domain").gauge().value()).isLessThan(2.0);
+        assertThat(meterRegistry.getMeters())
+                .allSatisfy(meter -> assertThat(meter.getId().getTags())
+                        .allSatisfy(tag -> assertThat(tag.getKey()).isEqualTo("scope")));
+    }
+
+    @Test
+    void disabledShaperAdmitsEverything() {
+        ReflectionTestUtils.setField(shaper, "enabled", false);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(shaper.tryAcquire("a@example.com", List.of("x@example.org"))).isZero();
+        }
+    }
+}
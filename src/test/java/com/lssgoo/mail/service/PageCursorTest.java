@@ -0,0 +1,60 @@
+package com.lssgoo.mail.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageCursorTest {
+
+    @Test
+    void roundTripsOlderCursor() {
+        MailReceiveService.PageCursor cursor = new MailReceiveService.PageCursor(1733306400L, 4521L, true);
+
+        assertThat(MailReceiveService.PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void roundTripsNewerCursor() {
+        MailReceiveService.PageCursor cursor = new MailReceiveService.PageCursor(7L, 0L, false);
+
+        assertThat(MailReceiveService.PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodesAsUnpaddedUrlSafeToken() {
+        String token = new MailReceiveService.PageCursor(Long.MAX_VALUE, Long.MAX_VALUE, true).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8))
+                .isEqualTo(Long.MAX_VALUE + ":" + Long.MAX_VALUE + ":older");
+    }
+
+    @Test
+    void decodesMissingCursorAsFirstPage() {
+        assertThat(MailReceiveService.PageCursor.decode(null)).isNull();
+        assertThat(MailReceiveService.PageCursor.decode("")).isNull();
+        assertThat(MailReceiveService.PageCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String value : new String[]{"1:2", "1:2:sideways", "a:2:older", "1:2:older:3"}) {
+            String token = Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+            assertThatThrownBy(() -> MailReceiveService.PageCursor.decode(token))
+                    .as(value)
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    @Test
+    void rejectsTokensThatAreNotBase64() {
+        assertThatThrownBy(() -> MailReceiveService.PageCursor.decode("not base64!"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Invalid cursor");
+    }
+}
@@ -0,0 +1,179 @@
+package com.lssgoo.mail.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.Provider;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmtpTransportPoolTest {
+
+    private static final String SENDER = "Alice@lssgoo.com";
+    private static final String PASSWORD = "secret";
+
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new SmtpTransportPool();
+        ReflectionTestUtils.setField(pool, "smtpHost", "localhost");
+        ReflectionTestUtils.setField(pool, "smtpPort", 587);
+        ReflectionTestUtils.setField(pool, "smtpTimeoutMs", 1000);
+        ReflectionTestUtils.setField(pool, "maxPerSender", 2);
+        ReflectionTestUtils.setField(pool, "maxTotal", 4);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMs", 50L);
+        ReflectionTestUtils.setField(pool, "idleTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(pool, "validateAfterIdleMs", 60000L);
+        ReflectionTestUtils.setField(pool, "keepaliveIntervalMs", 60000L);
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 2);
+        ReflectionTestUtils.setField(pool, "evictionIntervalMs", 60000L);
+        ReflectionTestUtils.setField(pool, "meterRegistry", new SimpleMeterRegistry());
+        pool.init();
+
+        // Route the pool's SMTP transports to an in-memory fake instead of a server
+        Session session = (Session) ReflectionTestUtils.getField(pool, "session");
+        session.addProvider(new Provider(Provider.Type.TRANSPORT, "smtp", FakeTransport.class.getName(), "test", null));
+        session.getProperties().put("mail.smtp.class", FakeTransport.class.getName());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void reusesIdleTransportForSameCredentials() {
+        Transport first;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            first = lease.getTransport();
+        }
+
+        try (SmtpTransportPool.Lease lease = pool.borrow("alice@lssgoo.com", PASSWORD)) {
+            assertThat(lease.getTransport()).isSameAs(first);
+            assertThat(first.isConnected()).isTrue();
+        }
+    }
+
+    @Test
+    void failedLoginLeavesOwnersTransportPooled() {
+        Transport owned;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            owned = lease.getTransport();
+        }
+
+        assertThatThrownBy(() -> pool.borrow(SENDER, "wrong"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Failed to connect to SMTP server");
+
+        assertThat(owned.isConnected()).isTrue();
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            assertThat(lease.getTransport()).isSameAs(owned);
+        }
+    }
+
+    @Test
+    void neverHandsOutTransportOfOtherCredentials() {
+        Transport owned;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            owned = lease.getTransport();
+        }
+
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, "secret-too")) {
+            assertThat(lease.getTransport()).isNotSameAs(owned);
+        }
+        assertThat(owned.isConnected()).isTrue();
+    }
+
+    @Test
+    void closesInvalidatedTransportInsteadOfPooling() {
+        Transport broken;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            broken = lease.getTransport();
+            lease.invalidate();
+        }
+
+        assertThat(broken.isConnected()).isFalse();
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            assertThat(lease.getTransport()).isNotSameAs(broken);
+        }
+    }
+
+    @Test
+    void retiresTransportAfterMaxMessages() throws Exception {
+        Transport retired;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            retired = lease.getTransport();
+            lease.send(message());
+            assertThat(lease.isExhausted()).isFalse();
+            lease.send(message());
+            assertThat(lease.isExhausted()).isTrue();
+        }
+
+        assertThat(retired.isConnected()).isFalse();
+        assertThat(((FakeTransport) retired).sent).isEqualTo(2);
+    }
+
+    @Test
+    void evictSenderClosesIdleTransports() {
+        Transport idle;
+        try (SmtpTransportPool.Lease lease = pool.borrow(SENDER, PASSWORD)) {
+            idle = lease.getTransport();
+        }
+
+        pool.evictSender("ALICE@lssgoo.com");
+
+        assertThat(idle.isConnected()).isFalse();
+    }
+
+    @Test
+    void limitsConcurrentLeasesPerSender() {
+        try (SmtpTransportPool.Lease first = pool.borrow(SENDER, PASSWORD);
+             SmtpTransportPool.Lease second = pool.borrow(SENDER, PASSWORD)) {
+            assertThat(first.getTransport()).isNotSameAs(second.getTransport());
+            assertThatThrownBy(() -> pool.borrow(SENDER, PASSWORD))
+                    .hasMessageContaining("Too many concurrent SMTP connections");
+        }
+
+        // Both permits came back with the leases
+        pool.borrow(SENDER, PASSWORD).close();
+    }
+
+    private MimeMessage message() throws Exception {
+        MimeMessage message = pool.createMimeMessage();
+        message.setFrom(new InternetAddress(SENDER));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("bob@example.com"));
+        message.setSubject("Hello");
+        message.setText("Hi Bob");
+        return message;
+    }
+
+    public static class FakeTransport extends Transport {
+
+        private int sent;
+
+        public FakeTransport(Session session, URLName urlName) {
+            super(session, urlName);
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) {
+            return password != null && password.startsWith(PASSWORD);
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) {
+            sent++;
+        }
+    }
+}